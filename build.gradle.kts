@@ -4,6 +4,7 @@ plugins {
     java
     application
     id("com.google.protobuf") version "0.9.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.pension"
@@ -33,13 +34,34 @@ dependencies {
 
     implementation("com.flipkart.zjsonpatch:zjsonpatch:0.4.16")
 
-    // gRPC
-    implementation("io.grpc:grpc-netty-shaded:$grpcVersion")
+    // gRPC, served on the Vert.x HTTP server through the grpc-java service bridge
+    implementation("io.vertx:vertx-grpc-server:$vertxVersion")
     implementation("io.grpc:grpc-protobuf:$grpcVersion")
     implementation("io.grpc:grpc-stub:$grpcVersion")
     implementation("com.google.protobuf:protobuf-java:$protobufVersion")
     implementation("com.google.protobuf:protobuf-java-util:$protobufVersion")
     implementation("javax.annotation:javax.annotation-api:1.3.2")
+
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+// The Vector API kernels (VECTOR_KERNELS=true) use the incubating jdk.incubator.vector module. They
+// get a source set of their own so only that compile adds the module; main loads them by name, and
+// the JVM needs the module only when they are switched on.
+val vectorModule = listOf("--add-modules", "jdk.incubator.vector")
+
+sourceSets {
+    create("vector") {
+        compileClasspath += sourceSets.main.get().output
+    }
+}
+
+dependencies {
+    runtimeOnly(sourceSets["vector"].output)
+    "jmhRuntimeOnly"(sourceSets["vector"].output)
+    testRuntimeOnly(sourceSets["vector"].output)
 }
 
 application {
@@ -69,10 +91,31 @@ tasks.jar {
         attributes["Main-Class"] = "com.pension.engine.Main"
     }
     duplicatesStrategy = DuplicatesStrategy.EXCLUDE
-    from(configurations.runtimeClasspath.get().map { if (it.isDirectory) it else zipTree(it) })
+    from(sourceSets["vector"].output)
+    from(configurations.runtimeClasspath.get().filter { it.name.endsWith(".jar") }.map { zipTree(it) })
     archiveFileName.set("pension-engine.jar")
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    // Allocation rate per op is what we track for hot-path changes, so the GC profiler is always on
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    jvmArgsAppend.set(listOf("-Dbench.testCasesDir=${project.projectDir}/test-cases") + vectorModule)
+}
+
+tasks.test {
+    useJUnitPlatform()
+    // SalaryKernelsTest checks the vector kernels against the scalar ones
+    jvmArgs(vectorModule)
+}
+
 tasks.withType<JavaCompile> {
     options.encoding = "UTF-8"
 }
+
+tasks.named<JavaCompile>("compileVectorJava") {
+    // javac 21 prints "using incubating module(s)" here; it has no -Xlint key, so it is left on
+    // rather than turning every other warning off with it
+    options.compilerArgs.addAll(vectorModule)
+}
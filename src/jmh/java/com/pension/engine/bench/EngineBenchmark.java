@@ -0,0 +1,76 @@
+package com.pension.engine.bench;
+
+import com.pension.engine.CalculationEngine;
+import com.pension.engine.kernel.ParallelKernels;
+import com.pension.engine.model.request.CalculationRequest;
+import com.pension.engine.model.response.CalculationResponse;
+import com.pension.engine.mutation.MutationRegistry;
+import com.pension.engine.patch.PatchMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link CalculationEngine#process} over every self-validation case plus generated
+ * large dossiers ({@code large-<policies>x<indexations>}). Lazy indexation only takes effect with
+ * {@code -p patchMode=NONE -p lazyIndexation=true}; {@code -p parallelThreads=N} runs the
+ * per-policy kernels on a pool of N threads with calibrated thresholds (0 = sequential).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    @Param({
+            "C01", "C02", "C03", "C04", "C05", "C06", "C07", "C08", "C09", "C10",
+            "C11", "C12", "C13", "C14", "B01",
+            "large-100x10", "large-1000x100", "large-5000x500"
+    })
+    public String workload;
+
+    @Param({"FORWARD_AND_BACKWARD"})
+    public PatchMode patchMode;
+
+    @Param({"false"})
+    public boolean lazyIndexation;
+
+    @Param({"0"})
+    public int parallelThreads;
+
+    private CalculationEngine engine;
+    private CalculationRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ParallelKernels kernels = parallelThreads > 0
+                ? new ParallelKernels(parallelThreads, 0)
+                : ParallelKernels.SEQUENTIAL;
+        engine = new CalculationEngine(new MutationRegistry(), null, lazyIndexation, kernels);
+        if (workload.startsWith("large-")) {
+            String[] size = workload.substring("large-".length()).split("x");
+            request = Workloads.largeDossier(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        } else {
+            request = Workloads.testCase(workload);
+        }
+        request.setPatchMode(patchMode);
+    }
+
+    @Benchmark
+    public CalculationResponse process() {
+        return engine.process(request);
+    }
+}
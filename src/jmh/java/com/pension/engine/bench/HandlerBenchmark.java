@@ -0,0 +1,128 @@
+package com.pension.engine.bench;
+
+import com.pension.engine.model.request.Mutation;
+import com.pension.engine.model.state.Situation;
+import com.pension.engine.mutation.AddPolicyHandler;
+import com.pension.engine.mutation.ApplyIndexationHandler;
+import com.pension.engine.mutation.CalculateRetirementBenefitHandler;
+import com.pension.engine.mutation.CreateDossierHandler;
+import com.pension.engine.mutation.MutationContext;
+import com.pension.engine.mutation.MutationRegistry;
+import com.pension.engine.mutation.MutationResult;
+import com.pension.engine.mutation.ProjectFutureBenefitsHandler;
+import com.pension.engine.patch.PatchMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each {@code MutationHandler} in isolation against a dossier of {@code policyCount} policies.
+ * Run with the GC profiler (configured in the {@code jmh} block) to get allocation per op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int policyCount;
+
+    @Param({"FORWARD_AND_BACKWARD", "NONE"})
+    public PatchMode patchMode;
+
+    private MutationContext context;
+
+    private final CreateDossierHandler createDossier = new CreateDossierHandler();
+    private final AddPolicyHandler addPolicy = new AddPolicyHandler();
+    private final ApplyIndexationHandler applyIndexation = new ApplyIndexationHandler();
+    private final CalculateRetirementBenefitHandler calculateRetirementBenefit = new CalculateRetirementBenefitHandler();
+    private final ProjectFutureBenefitsHandler projectFutureBenefits = new ProjectFutureBenefitsHandler();
+
+    private Mutation createDossierMutation;
+    private Mutation[] addPolicyMutations;
+    private Mutation indexUp;
+    private Mutation indexDown;
+    private Mutation retirementMutation;
+    private Mutation projectionMutation;
+
+    private Situation situation;
+    private boolean up;
+
+    @Setup(Level.Trial)
+    public void setUpMutations() {
+        context = new MutationContext(null, patchMode);
+        createDossierMutation = Workloads.createDossier();
+        addPolicyMutations = new Mutation[policyCount];
+        for (int i = 0; i < policyCount; i++) {
+            addPolicyMutations[i] = Workloads.addPolicy(i);
+        }
+        // +1% followed by its inverse keeps salaries bounded however many ops an iteration runs
+        indexUp = Workloads.applyIndexation(0.01);
+        indexDown = Workloads.applyIndexation(1 / 1.01 - 1);
+        retirementMutation = Workloads.calculateRetirementBenefit("2025-01-01");
+        projectionMutation = Workloads.projectFutureBenefits("2025-01-01", "2065-01-01", 12);
+
+        // Handlers read typed properties; bind them up front as the engine would at ingest
+        MutationRegistry registry = new MutationRegistry();
+        registry.bindProperties(createDossierMutation);
+        for (Mutation m : addPolicyMutations) {
+            registry.bindProperties(m);
+        }
+        registry.bindProperties(indexUp);
+        registry.bindProperties(indexDown);
+        registry.bindProperties(retirementMutation);
+        registry.bindProperties(projectionMutation);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpSituation() {
+        situation = populatedSituation();
+        up = true;
+    }
+
+    private Situation populatedSituation() {
+        Situation s = new Situation(null);
+        createDossier.execute(s, createDossierMutation, context);
+        for (Mutation m : addPolicyMutations) {
+            addPolicy.execute(s, m, context);
+        }
+        return s;
+    }
+
+    /** Builds the whole dossier per op, so duplicate detection cost over {@code policyCount} adds shows up. */
+    @Benchmark
+    public Situation addPolicy() {
+        return populatedSituation();
+    }
+
+    @Benchmark
+    public MutationResult applyIndexation() {
+        Mutation m = up ? indexUp : indexDown;
+        up = !up;
+        return applyIndexation.execute(situation, m, context);
+    }
+
+    @Benchmark
+    public MutationResult calculateRetirementBenefit() {
+        return calculateRetirementBenefit.execute(situation, retirementMutation, context);
+    }
+
+    @Benchmark
+    public MutationResult projectFutureBenefits() {
+        return projectFutureBenefits.execute(situation, projectionMutation, context);
+    }
+}
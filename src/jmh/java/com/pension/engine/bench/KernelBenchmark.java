@@ -0,0 +1,108 @@
+package com.pension.engine.bench;
+
+import com.pension.engine.kernel.SalaryKernels;
+import com.pension.engine.kernel.ScalarSalaryKernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SalaryKernels} on their own, scalar against Vector API, over {@code policyCount}
+ * policies and a projection grid of {@code dateCount} dates per policy. The handlers add object
+ * allocation (projections, patches) on top of these, which the vector kernels do not change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    @Param({"100", "10000"})
+    public int policyCount;
+
+    @Param({"480"})
+    public int dateCount;
+
+    private SalaryKernels math;
+    private int[] startDays;
+    private double[] salaries;
+    private double[] partTimeFactors;
+    private double[] years;
+    private double[] rates;
+    private int[] rateIndex;
+    private double[] pensions;
+    private double[] dateDays;
+    private double[] weightedAvgs;
+    private double[] row;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        math = "vector".equals(kernels) ? SalaryKernels.vector() : ScalarSalaryKernels.INSTANCE;
+        Random random = new Random(42);
+        startDays = new int[policyCount];
+        salaries = new double[policyCount];
+        partTimeFactors = new double[policyCount];
+        years = new double[policyCount];
+        rateIndex = new int[policyCount];
+        pensions = new double[policyCount];
+        rates = new double[] {0.02, 0.0175, 0.015};
+        for (int i = 0; i < policyCount; i++) {
+            startDays[i] = 7_000 + random.nextInt(15_000);
+            salaries[i] = 30_000 + random.nextDouble() * 70_000;
+            partTimeFactors[i] = 0.5 + random.nextDouble() * 0.5;
+            rateIndex[i] = random.nextInt(rates.length);
+        }
+        dateDays = new double[dateCount];
+        weightedAvgs = new double[dateCount];
+        row = new double[dateCount];
+        for (int n = 0; n < dateCount; n++) {
+            dateDays[n] = 19_000 + n * 30.4;
+            weightedAvgs[n] = 50_000 + n;
+        }
+        math.yearsOfService(startDays, 25_000, years, 0, policyCount);
+    }
+
+    @Benchmark
+    public double[] yearsOfService() {
+        math.yearsOfService(startDays, 25_000, years, 0, policyCount);
+        return years;
+    }
+
+    @Benchmark
+    public double weightedSum() {
+        return math.weightedSum(salaries, partTimeFactors, years, policyCount);
+    }
+
+    @Benchmark
+    public double[] accruedPensions() {
+        math.accruedPensions(52_000, years, rates, rateIndex, pensions, 0, policyCount);
+        return pensions;
+    }
+
+    @Benchmark
+    public double projectionGrid() {
+        double checksum = 0;
+        for (int i = 0; i < policyCount; i++) {
+            math.projectionRow(dateDays, weightedAvgs, startDays[i], 0.02, row, dateCount);
+            checksum += row[dateCount - 1];
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,144 @@
+package com.pension.engine.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pension.engine.Main;
+import com.pension.engine.model.request.CalculationInstructions;
+import com.pension.engine.model.request.CalculationRequest;
+import com.pension.engine.model.request.Mutation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request builders shared by the benchmarks: the self-validation cases in {@code test-cases/}
+ * and synthetic dossiers that are far larger than anything in those cases.
+ */
+public final class Workloads {
+
+    private static final ObjectMapper MAPPER = Main.MAPPER;
+
+    static final String DOSSIER_ID = "550e8400-e29b-41d4-a716-446655440000";
+    static final String[] SCHEMES = {"SCHEME-A", "SCHEME-B", "SCHEME-C", "SCHEME-D"};
+
+    private static final AtomicLong MUTATION_SEQUENCE = new AtomicLong();
+
+    private Workloads() {}
+
+    public static Path testCasesDir() {
+        return Paths.get(System.getProperty("bench.testCasesDir", "test-cases"));
+    }
+
+    /** Loads the {@code request} section of the test case whose file name starts with {@code id}. */
+    public static CalculationRequest testCase(String id) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(testCasesDir(), id + "-*.json")) {
+            for (Path file : files) {
+                JsonNode root = MAPPER.readTree(file.toFile());
+                return MAPPER.treeToValue(root.get("request"), CalculationRequest.class);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        throw new IllegalArgumentException("No test case " + id + " in " + testCasesDir().toAbsolutePath());
+    }
+
+    /**
+     * A single dossier with {@code policyCount} policies spread over four schemes, followed by
+     * {@code indexationCount} alternating scheme/date filtered indexations, a retirement calculation
+     * and a monthly 40-year projection.
+     */
+    public static CalculationRequest largeDossier(int policyCount, int indexationCount) {
+        List<Mutation> mutations = new ArrayList<>(policyCount + indexationCount + 3);
+        mutations.add(createDossier());
+        for (int i = 0; i < policyCount; i++) {
+            mutations.add(addPolicy(i));
+        }
+        for (int i = 0; i < indexationCount; i++) {
+            mutations.add(applyIndexation(i));
+        }
+        mutations.add(calculateRetirementBenefit("2025-01-01"));
+        mutations.add(projectFutureBenefits("2025-01-01", "2065-01-01", 1));
+
+        return request(mutations);
+    }
+
+    public static CalculationRequest request(List<Mutation> mutations) {
+        CalculationInstructions instructions = new CalculationInstructions();
+        instructions.setMutations(mutations);
+        CalculationRequest request = new CalculationRequest();
+        request.setTenantId("bench_tenant");
+        request.setCalculationInstructions(instructions);
+        return request;
+    }
+
+    public static Mutation createDossier() {
+        ObjectNode props = MAPPER.createObjectNode();
+        props.put("dossier_id", DOSSIER_ID);
+        props.put("person_id", "660e8400-e29b-41d4-a716-446655440001");
+        props.put("name", "Bench Participant");
+        props.put("birth_date", "1958-03-01");
+        return mutation("create_dossier", "DOSSIER_CREATION", "2020-01-01", props);
+    }
+
+    public static Mutation addPolicy(int i) {
+        ObjectNode props = MAPPER.createObjectNode();
+        props.put("scheme_id", SCHEMES[i % SCHEMES.length]);
+        props.put("employment_start_date", LocalDate.of(1980, 1, 1).plusDays(7L * i).toString());
+        props.put("salary", 30000 + (i % 50) * 1000);
+        props.put("part_time_factor", (i % 5 == 0) ? 0.8 : 1.0);
+        return mutation("add_policy", "DOSSIER", "2020-01-01", props);
+    }
+
+    public static Mutation applyIndexation(int i) {
+        ObjectNode props = MAPPER.createObjectNode();
+        props.put("percentage", 0.01);
+        if (i % 2 == 0) {
+            props.put("scheme_id", SCHEMES[(i / 2) % SCHEMES.length]);
+        } else {
+            props.put("effective_before", "2000-01-01");
+        }
+        return mutation("apply_indexation", "DOSSIER", "2021-01-01", props);
+    }
+
+    public static Mutation applyIndexation(double percentage) {
+        ObjectNode props = MAPPER.createObjectNode();
+        props.put("percentage", percentage);
+        return mutation("apply_indexation", "DOSSIER", "2021-01-01", props);
+    }
+
+    public static Mutation calculateRetirementBenefit(String retirementDate) {
+        ObjectNode props = MAPPER.createObjectNode();
+        props.put("retirement_date", retirementDate);
+        return mutation("calculate_retirement_benefit", "DOSSIER", retirementDate, props);
+    }
+
+    public static Mutation projectFutureBenefits(String startDate, String endDate, int intervalMonths) {
+        ObjectNode props = MAPPER.createObjectNode();
+        props.put("projection_start_date", startDate);
+        props.put("projection_end_date", endDate);
+        props.put("projection_interval_months", intervalMonths);
+        return mutation("project_future_benefits", "DOSSIER", startDate, props);
+    }
+
+    private static Mutation mutation(String name, String type, String actualAt, JsonNode props) {
+        Mutation mutation = new Mutation();
+        mutation.setMutationId(String.format("00000000-0000-4000-8000-%012d", MUTATION_SEQUENCE.incrementAndGet()));
+        mutation.setMutationDefinitionName(name);
+        mutation.setMutationType(type);
+        mutation.setActualAt(actualAt);
+        if (!"DOSSIER_CREATION".equals(type)) {
+            mutation.setDossierId(DOSSIER_ID);
+        }
+        mutation.setMutationProperties(props);
+        return mutation;
+    }
+}
@@ -0,0 +1,252 @@
+package com.pension.engine;
+
+import com.pension.engine.patch.PatchMode;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code POST /calculation-requests:batch}: newline-delimited {@code CalculationRequest}s in,
+ * one newline-delimited {@code CalculationResponse} (or {@code BatchError}) per non-blank line
+ * out, streamed as they are ready.
+ *
+ * <p>Lines are split on the event loop and processed on a shared worker pool. At most
+ * {@code maxInFlight} lines are read but not yet written; at that point splitting stops, the rest
+ * of the chunk is kept, and the request is paused until half of them have gone out. It is also
+ * paused while the response write queue is full. In {@link BatchOrder#INPUT} order finished lines
+ * wait for their predecessors, which counts against the same bound. A line in flight refers into
+ * its chunk rather than a copy, so at most {@code maxInFlight} chunks are held.
+ */
+class BatchCalculationHandler {
+
+    private final BatchLineProcessor processor;
+    private final WorkerExecutor workers;
+    private final int maxInFlight;
+    private final int maxLineBytes;
+
+    BatchCalculationHandler(BatchLineProcessor processor, WorkerExecutor workers, int maxInFlight, int maxLineBytes) {
+        this.processor = processor;
+        this.workers = workers;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxLineBytes = maxLineBytes;
+    }
+
+    void handle(HttpServerRequest req, PatchMode patchMode, BatchOrder order) {
+        new Session(req, patchMode, order).start();
+    }
+
+    /** One batch request; all of its state is only touched on the request's event loop. */
+    private final class Session {
+        private final HttpServerRequest req;
+        private final HttpServerResponse resp;
+        private final PatchMode patchMode;
+        private final BatchOrder order;
+
+        /** Bytes of a line split across chunks. */
+        private final ByteArrayOutputStream carry = new ByteArrayOutputStream();
+        /** Finished lines waiting for an earlier one, in input order only. */
+        private final Map<Long, byte[]> pending = new HashMap<>();
+        /** The chunk being split, from {@link #parkedOffset}; null once it is all consumed. */
+        private byte[] parked;
+        private int parkedOffset;
+        private boolean draining;
+
+        private long lineNumber;
+        private long submitted;
+        private long nextToWrite;
+        private int outstanding;
+        private boolean oversized;
+        /** The request body has been fully received; {@link #inputEnded} once it is also split. */
+        private boolean bodyEnded;
+        private boolean inputEnded;
+        private boolean closed;
+
+        Session(HttpServerRequest req, PatchMode patchMode, BatchOrder order) {
+            this.req = req;
+            this.resp = req.response();
+            this.patchMode = patchMode;
+            this.order = order;
+        }
+
+        void start() {
+            resp.setChunked(true).putHeader("Content-Type", "application/x-ndjson");
+            resp.closeHandler(v -> closed = true);
+            req.handler(this::onChunk);
+            req.endHandler(v -> onEnd());
+            req.exceptionHandler(err -> {
+                closed = true;
+                resp.reset();
+            });
+        }
+
+        private void onChunk(Buffer chunk) {
+            parked = chunk.getBytes();
+            parkedOffset = 0;
+            if (!drain()) {
+                req.pause();
+            }
+        }
+
+        private void onEnd() {
+            bodyEnded = true;
+            drain();
+        }
+
+        /**
+         * Splits the parked chunk into lines, and ends the input once the body has ended, for as
+         * long as fewer than {@code maxInFlight} lines are outstanding. Returns whether everything
+         * received so far has been consumed.
+         */
+        private boolean drain() {
+            if (draining) {
+                // Re-entered through a line answered at once (413); the outer call carries on
+                return false;
+            }
+            draining = true;
+            try {
+                while (parked != null) {
+                    byte[] data = parked;
+                    int lineStart = parkedOffset;
+                    int newline = lineStart;
+                    while (newline < data.length && data[newline] != '\n') {
+                        newline++;
+                    }
+                    if (newline == data.length) {
+                        appendToCarry(data, lineStart, data.length - lineStart);
+                        parked = null;
+                        break;
+                    }
+                    if (outstanding >= maxInFlight) {
+                        return false;
+                    }
+                    parkedOffset = newline + 1;
+                    if (carry.size() > 0 || oversized) {
+                        appendToCarry(data, lineStart, newline - lineStart);
+                        endCarriedLine();
+                    } else {
+                        submit(data, lineStart, newline - lineStart);
+                    }
+                }
+                if (bodyEnded && !inputEnded) {
+                    if (carry.size() > 0 || oversized) {
+                        if (outstanding >= maxInFlight) {
+                            return false;
+                        }
+                        endCarriedLine();
+                    }
+                    inputEnded = true;
+                    finishIfDone();
+                }
+                return true;
+            } finally {
+                draining = false;
+            }
+        }
+
+        private void appendToCarry(byte[] data, int offset, int length) {
+            if (oversized) {
+                return;
+            }
+            if (carry.size() + length > maxLineBytes) {
+                // Drop the rest of the line; it is answered with an error in its slot
+                oversized = true;
+                carry.reset();
+                return;
+            }
+            carry.write(data, offset, length);
+        }
+
+        private void endCarriedLine() {
+            if (oversized) {
+                oversized = false;
+                long line = ++lineNumber;
+                long seq = submitted++;
+                outstanding++;
+                complete(seq, lineTooLong(line));
+            } else {
+                byte[] line = carry.toByteArray();
+                carry.reset();
+                submit(line, 0, line.length);
+            }
+        }
+
+        private void submit(byte[] data, int offset, int length) {
+            long line = ++lineNumber;
+            if (length > 0 && data[offset + length - 1] == '\r') {
+                length--;
+            }
+            if (BatchLineProcessor.isBlank(data, offset, length)) {
+                return;
+            }
+            if (length > maxLineBytes) {
+                long seq = submitted++;
+                outstanding++;
+                complete(seq, lineTooLong(line));
+                return;
+            }
+            long seq = submitted++;
+            outstanding++;
+            int lineLength = length;
+            workers.<byte[]>executeBlocking(() -> processor.process(data, offset, lineLength, line, patchMode), false)
+                    .onComplete(ar -> complete(seq, ar.succeeded() ? ar.result()
+                            : processor.error(line, 500, "Internal server error: " + ar.cause().getMessage())));
+        }
+
+        private byte[] lineTooLong(long line) {
+            return processor.error(line, 413, "Batch line exceeds " + maxLineBytes + " bytes");
+        }
+
+        private void complete(long seq, byte[] output) {
+            if (order == BatchOrder.COMPLETION) {
+                write(output);
+            } else if (seq == nextToWrite) {
+                write(output);
+                nextToWrite++;
+                byte[] next;
+                while ((next = pending.remove(nextToWrite)) != null) {
+                    write(next);
+                    nextToWrite++;
+                }
+            } else {
+                pending.put(seq, output);
+            }
+            finishIfDone();
+            resumeIfBelowBound();
+        }
+
+        private void write(byte[] output) {
+            outstanding--;
+            if (closed) {
+                return;
+            }
+            resp.write(Buffer.buffer(output));
+            if (resp.writeQueueFull()) {
+                // Slow reader: stop taking input; lines already in flight still go out
+                req.pause();
+                resp.drainHandler(v -> resumeIfBelowBound());
+            }
+        }
+
+        private void resumeIfBelowBound() {
+            if (inputEnded || closed || outstanding > maxInFlight / 2 || resp.writeQueueFull()) {
+                return;
+            }
+            // The rest of a chunk that hit the bound goes first
+            if (drain() && !bodyEnded) {
+                req.resume();
+            }
+        }
+
+        private void finishIfDone() {
+            if (inputEnded && outstanding == 0 && !closed) {
+                closed = true;
+                resp.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.pension.engine;
+
+import com.pension.engine.json.CalculationRequestReader;
+import com.pension.engine.json.CalculationResponseWriter;
+import com.pension.engine.mutation.MutationRegistry;
+import com.pension.engine.patch.PatchMode;
+import com.pension.engine.scheme.SchemeRegistryClient;
+import io.vertx.core.Vertx;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code batch <in.jsonl> <out.jsonl> [--threads N] [--patch-mode M]}: the NDJSON batch endpoint
+ * without the server. Output lines are the same as {@code /calculation-requests:batch} in input
+ * order.
+ *
+ * <p>The input is memory-mapped and cut into segments on line boundaries. Worker threads, each
+ * with its own engine, take segments in input order and write their results into direct buffers
+ * from a small pool of their own. A filled buffer is queued on its segment once the lines in it
+ * are complete, and the calling thread writes the queues to the output one segment after the
+ * other, handing each buffer back to its pool. Every output byte is written once, and a worker
+ * more than a pool ahead of the writer waits for it. A first parallel pass counts the lines of
+ * every segment so error lines carry their line number in the whole file.
+ */
+final class BatchCommand {
+
+    private static final long MIN_SEGMENT_BYTES = 1L << 20;
+    /** Well under the 2 GiB limit of a single mapping. */
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int SEGMENTS_PER_THREAD = 8;
+    private static final int OUTPUT_BUFFER_BYTES = 1 << 20;
+    /** Direct buffers per worker. A line that fills all of them gets spare buffers, dropped once written. */
+    private static final int OUTPUT_BUFFERS_PER_THREAD = 4;
+
+    /** Ends a segment's queue, or every queue when a worker fails. */
+    private static final Chunk END = new Chunk(ByteBuffer.allocate(0), null);
+    private static final Chunk FAILED = new Chunk(ByteBuffer.allocate(0), null);
+
+    private final Path input;
+    private final Path output;
+    private final int threads;
+    private final PatchMode patchMode;
+
+    private BatchCommand(Path input, Path output, int threads, PatchMode patchMode) {
+        this.input = input;
+        this.output = output;
+        this.threads = threads;
+        this.patchMode = patchMode;
+    }
+
+    /** Entry point from {@link Main}; {@code args} excludes the {@code batch} word. Returns the exit code. */
+    static int run(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: batch <in.jsonl> <out.jsonl> [--threads N] [--patch-mode none|forward|forward_and_backward]");
+            return 2;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        PatchMode patchMode = PatchMode.DEFAULT;
+        try {
+            for (int i = 2; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads":
+                        threads = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--patch-mode":
+                        patchMode = PatchMode.parse(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            return 2;
+        }
+
+        BatchCommand command = new BatchCommand(Paths.get(args[0]), Paths.get(args[1]), threads, patchMode);
+        try {
+            command.execute();
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Batch failed: " + e);
+            return 1;
+        }
+    }
+
+    private void execute() throws IOException {
+        long startNanos = System.nanoTime();
+
+        // Scheme lookups are the only part that needs Vert.x; it is only started for them
+        String schemeRegistryUrl = System.getenv("SCHEME_REGISTRY_URL");
+        Vertx vertx = null;
+        SchemeRegistryClient schemeClient = null;
+        if (schemeRegistryUrl != null && !schemeRegistryUrl.isEmpty()) {
+            vertx = Vertx.vertx();
+            schemeClient = new SchemeRegistryClient(vertx, schemeRegistryUrl);
+        }
+        boolean lazyIndexation = Boolean.parseBoolean(System.getenv("LAZY_INDEXATION"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "batch-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            List<long[]> segments = split(in);
+
+            // Pass 1: lines per segment, for absolute line numbers in error lines
+            long[] firstLine = new long[segments.size() + 1];
+            List<Future<Long>> counts = new ArrayList<>(segments.size());
+            for (long[] segment : segments) {
+                counts.add(pool.submit(() -> countLines(in.map(FileChannel.MapMode.READ_ONLY, segment[0], segment[1]))));
+            }
+            for (int s = 0; s < segments.size(); s++) {
+                firstLine[s + 1] = firstLine[s] + await(counts.get(s));
+            }
+
+            // Pass 2: workers fill each segment's queue, one engine per worker thread
+            List<BlockingQueue<Chunk>> outputs = new ArrayList<>(segments.size());
+            for (int s = 0; s < segments.size(); s++) {
+                outputs.add(new LinkedBlockingQueue<>());
+            }
+            AtomicInteger nextSegment = new AtomicInteger();
+            SchemeRegistryClient sharedClient = schemeClient;
+            List<Future<Long>> workers = new ArrayList<>(threads);
+            for (int w = 0; w < threads; w++) {
+                workers.add(pool.submit(() -> {
+                    try {
+                        MutationRegistry registry = new MutationRegistry();
+                        BatchLineProcessor processor = new BatchLineProcessor(
+                                new CalculationEngine(registry, sharedClient, lazyIndexation),
+                                new CalculationRequestReader(Main.MAPPER.getFactory(), registry),
+                                new CalculationResponseWriter(Main.MAPPER.getFactory()),
+                                Main.MAPPER);
+                        ChunkOutputStream out = new ChunkOutputStream();
+                        long processed = 0;
+                        int s;
+                        while ((s = nextSegment.getAndIncrement()) < segments.size()) {
+                            long[] segment = segments.get(s);
+                            processed += processSegment(in.map(FileChannel.MapMode.READ_ONLY, segment[0], segment[1]),
+                                    firstLine[s], processor, out, outputs.get(s));
+                        }
+                        return processed;
+                    } catch (Throwable t) {
+                        // The writer may be waiting on any segment
+                        for (BlockingQueue<Chunk> queue : outputs) {
+                            queue.add(FAILED);
+                        }
+                        throw t;
+                    }
+                }));
+            }
+
+            // Write the segments in input order as their buffers arrive
+            try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (BlockingQueue<Chunk> segmentOutput : outputs) {
+                    Chunk chunk;
+                    while ((chunk = take(segmentOutput)) != END) {
+                        if (chunk == FAILED) {
+                            for (Future<Long> worker : workers) {
+                                await(worker);
+                            }
+                            throw new IOException("A batch worker failed");
+                        }
+                        ByteBuffer bytes = chunk.bytes();
+                        while (bytes.hasRemaining()) {
+                            out.write(bytes);
+                        }
+                        chunk.release();
+                    }
+                }
+            }
+            long requests = 0;
+            for (Future<Long> worker : workers) {
+                requests += await(worker);
+            }
+
+            long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+            System.err.println("Processed " + requests + " requests from " + segments.size() + " segments on "
+                    + threads + " threads in " + elapsedMs + " ms");
+        } finally {
+            pool.shutdownNow();
+            if (vertx != null) {
+                vertx.close();
+            }
+        }
+    }
+
+    /** {@code [offset, length]} pairs covering the file, each ending just after a newline (or at EOF). */
+    private List<long[]> split(FileChannel in) throws IOException {
+        long size = in.size();
+        long target = Math.min(MAX_SEGMENT_BYTES,
+                Math.max(MIN_SEGMENT_BYTES, size / ((long) threads * SEGMENTS_PER_THREAD) + 1));
+        List<long[]> segments = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + target);
+            // Extend to the end of the line the cut falls in
+            while (end < size) {
+                probe.clear();
+                int n = in.read(probe, end);
+                int newline = -1;
+                for (int i = 0; i < n; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += n;
+            }
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line at byte " + start + " is longer than a single mapping allows");
+            }
+            segments.add(new long[] {start, end - start});
+            start = end;
+        }
+        return segments;
+    }
+
+    private static long countLines(MappedByteBuffer segment) {
+        long lines = 0;
+        int limit = segment.limit();
+        for (int i = 0; i < limit; i++) {
+            if (segment.get(i) == '\n') {
+                lines++;
+            }
+        }
+        // A last line without a newline still counts
+        if (limit > 0 && segment.get(limit - 1) != '\n') {
+            lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * Processes every non-blank line of {@code segment} through {@code out} into {@code queue}, which
+     * is then ended; returns the number processed. A line whose response fails halfway is replaced
+     * by an error line, as one whose calculation fails already is.
+     */
+    private long processSegment(MappedByteBuffer segment, long firstLine, BatchLineProcessor processor,
+                                ChunkOutputStream out, BlockingQueue<Chunk> queue) throws IOException {
+        long processed = 0;
+        long lineNumber = firstLine;
+        byte[] line = new byte[8192];
+        int limit = segment.limit();
+        out.startSegment(queue);
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && segment.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int length = lineEnd - lineStart;
+            lineNumber++;
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            segment.get(lineStart, line, 0, length);
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            if (!BatchLineProcessor.isBlank(line, 0, length)) {
+                try {
+                    processor.process(line, 0, length, lineNumber, patchMode, out);
+                } catch (InterruptedIOException e) {
+                    throw e;
+                } catch (IOException | RuntimeException e) {
+                    out.discardLine();
+                    out.write(processor.error(lineNumber, 500, "Internal server error: " + e.getMessage()));
+                }
+                out.endLine();
+                processed++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        out.endSegment();
+        return processed;
+    }
+
+    /** A filled buffer of a segment's output, and the pool it goes back to (none for a spare). */
+    private record Chunk(ByteBuffer bytes, BlockingQueue<ByteBuffer> pool) {
+
+        void release() {
+            if (pool != null) {
+                pool.add(bytes.clear());
+            }
+        }
+    }
+
+    /**
+     * A worker's output lines, in direct buffers from a pool of its own. A buffer is queued on the
+     * segment only once every line in it is complete, so a line whose response fails halfway can be
+     * taken back with {@link #discardLine()}. {@code flush} and {@code close} do nothing, because the
+     * JSON generator calls them after every response.
+     *
+     * <p>Waiting for a pooled buffer cannot deadlock: it only happens while the buffers of the
+     * current line number fewer than the pool, so the rest are queued and the writer frees them
+     * once it reaches this segment. A line longer than that gets spare buffers instead.
+     */
+    private static final class ChunkOutputStream extends OutputStream {
+
+        private final BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(OUTPUT_BUFFERS_PER_THREAD);
+        /** Filled buffers holding part of the current line, oldest first. */
+        private final List<Chunk> line = new ArrayList<>();
+        private BlockingQueue<Chunk> queue;
+        private Chunk current;
+        /** Where the current line starts in its first buffer. */
+        private int lineStart;
+
+        ChunkOutputStream() {
+            for (int i = 0; i < OUTPUT_BUFFERS_PER_THREAD; i++) {
+                pool.add(ByteBuffer.allocateDirect(OUTPUT_BUFFER_BYTES));
+            }
+        }
+
+        void startSegment(BlockingQueue<Chunk> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (current == null || !current.bytes().hasRemaining()) {
+                next();
+            }
+            current.bytes().put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (current == null || !current.bytes().hasRemaining()) {
+                    next();
+                }
+                int n = Math.min(length, current.bytes().remaining());
+                current.bytes().put(bytes, offset, n);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        private void next() throws InterruptedIOException {
+            if (current == null) {
+                lineStart = 0;
+            } else {
+                line.add(current);
+            }
+            ByteBuffer bytes;
+            if (line.size() < OUTPUT_BUFFERS_PER_THREAD) {
+                try {
+                    bytes = pool.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted");
+                }
+                current = new Chunk(bytes, pool);
+            } else {
+                current = new Chunk(ByteBuffer.allocateDirect(OUTPUT_BUFFER_BYTES), null);
+            }
+        }
+
+        /** Makes the current line final; buffers it filled go to the writer. */
+        void endLine() {
+            for (Chunk chunk : line) {
+                queue(chunk);
+            }
+            line.clear();
+            if (current != null && !current.bytes().hasRemaining()) {
+                queue(current);
+                current = null;
+            } else if (current != null) {
+                lineStart = current.bytes().position();
+            }
+        }
+
+        /** Drops what has been written of the current line. */
+        void discardLine() {
+            if (!line.isEmpty()) {
+                current.release();
+                for (int i = 1; i < line.size(); i++) {
+                    line.get(i).release();
+                }
+                current = line.get(0);
+                line.clear();
+            }
+            if (current != null) {
+                current.bytes().position(lineStart);
+            }
+        }
+
+        /** Queues what is left of the segment and ends it. Only between lines. */
+        void endSegment() {
+            if (current != null && current.bytes().position() > 0) {
+                queue(current);
+                current = null;
+            }
+            queue.add(END);
+        }
+
+        private void queue(Chunk chunk) {
+            chunk.bytes().flip();
+            queue.add(chunk);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static Chunk take(BlockingQueue<Chunk> queue) throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private static long await(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.pension.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pension.engine.json.CalculationRequestReader;
+import com.pension.engine.json.CalculationResponseWriter;
+import com.pension.engine.model.request.CalculationRequest;
+import com.pension.engine.model.response.BatchError;
+import com.pension.engine.model.response.CalculationResponse;
+import com.pension.engine.patch.PatchMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Turns one NDJSON line holding a {@link CalculationRequest} into one output line: the
+ * {@code CalculationResponse}, or a {@link BatchError} for a line the single-request endpoint
+ * would have answered with a 400 or 500. Thread-safe; batch callers run it on worker threads.
+ */
+public class BatchLineProcessor {
+
+    private static final int LINE_BUFFER_INITIAL_CAPACITY = 8192;
+
+    private final CalculationEngine engine;
+    private final CalculationRequestReader requestReader;
+    private final CalculationResponseWriter responseWriter;
+    private final ObjectMapper mapper;
+
+    public BatchLineProcessor(CalculationEngine engine, CalculationRequestReader requestReader,
+                              CalculationResponseWriter responseWriter, ObjectMapper mapper) {
+        this.engine = engine;
+        this.requestReader = requestReader;
+        this.responseWriter = responseWriter;
+        this.mapper = mapper;
+    }
+
+    /**
+     * The output line for {@code bytes[offset, offset + length)}, terminated by {@code '\n'}.
+     * {@code lineNumber} (1-based) is only used to label errors. Never throws.
+     */
+    public byte[] process(byte[] bytes, int offset, int length, long lineNumber, PatchMode patchMode) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(LINE_BUFFER_INITIAL_CAPACITY);
+        try {
+            process(bytes, offset, length, lineNumber, patchMode, out);
+            return out.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            return error(lineNumber, 500, "Internal server error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the output line for {@code bytes[offset, offset + length)} straight to {@code out}, which
+     * may be closed by the JSON generator, so callers that buffer should ignore that. Request errors
+     * become error lines as in {@link #process(byte[], int, int, long, PatchMode)}; a failure while
+     * writing the response is thrown, since part of it may already be in {@code out}.
+     */
+    public void process(byte[] bytes, int offset, int length, long lineNumber, PatchMode patchMode,
+                        OutputStream out) throws IOException {
+        CalculationRequest request;
+        try {
+            request = requestReader.read(bytes, offset, length);
+        } catch (IOException | RuntimeException e) {
+            out.write(error(lineNumber, 400, "Malformed calculation request: " + e.getMessage()));
+            return;
+        }
+        String rejection = CalculationEngine.rejectionReason(request);
+        if (rejection != null) {
+            out.write(error(lineNumber, 400, rejection));
+            return;
+        }
+        request.setPatchMode(patchMode);
+        CalculationResponse response;
+        try {
+            response = engine.process(request);
+        } catch (RuntimeException e) {
+            out.write(error(lineNumber, 500, "Internal server error: " + e.getMessage()));
+            return;
+        }
+        responseWriter.write(response, out);
+        out.write('\n');
+    }
+
+    /** A {@link BatchError} output line. */
+    byte[] error(long lineNumber, int status, String message) {
+        try {
+            byte[] json = mapper.writeValueAsBytes(new BatchError(lineNumber, status, message));
+            byte[] line = new byte[json.length + 1];
+            System.arraycopy(json, 0, line, 0, json.length);
+            line[json.length] = '\n';
+            return line;
+        } catch (IOException e) {
+            return ("{\"line\":" + lineNumber + ",\"status\":500,\"message\":\"Internal server error\"}\n").getBytes();
+        }
+    }
+
+    /** Blank lines (spaces, tabs, a stray CR) are skipped by batch callers rather than answered. */
+    static boolean isBlank(byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            byte b = data[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
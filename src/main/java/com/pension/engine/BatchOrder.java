@@ -0,0 +1,23 @@
+package com.pension.engine;
+
+import java.util.Locale;
+
+/** Order of the response lines of a batch: that of the request lines, or as they finish. */
+public enum BatchOrder {
+    INPUT,
+    COMPLETION;
+
+    public static final BatchOrder DEFAULT = INPUT;
+
+    /** Parses the {@code order} batch option ({@code input}, {@code completion}); {@code null} selects the default. */
+    public static BatchOrder parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return DEFAULT;
+        }
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "input": return INPUT;
+            case "completion": return COMPLETION;
+            default: throw new IllegalArgumentException("Invalid order: " + value);
+        }
+    }
+}
@@ -1,22 +1,29 @@
 package com.pension.engine;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pension.engine.kernel.ParallelKernels;
+import com.pension.engine.model.request.AddPolicyProperties;
 import com.pension.engine.model.request.CalculationRequest;
 import com.pension.engine.model.request.Mutation;
 import com.pension.engine.model.response.*;
+import com.pension.engine.model.state.Dossier;
 import com.pension.engine.model.state.Situation;
+import com.pension.engine.mutation.MutationContext;
 import com.pension.engine.mutation.MutationHandler;
 import com.pension.engine.mutation.MutationRegistry;
 import com.pension.engine.mutation.MutationResult;
+import com.pension.engine.patch.Patch;
+import com.pension.engine.patch.PatchMode;
 import com.pension.engine.scheme.SchemeRegistryClient;
-
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.vertx.core.Future;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class CalculationEngine {
@@ -25,13 +32,33 @@ public class CalculationEngine {
             .withZone(ZoneOffset.UTC);
 
     private final MutationRegistry registry;
-    private final ObjectMapper mapper;
     private final SchemeRegistryClient schemeClient;
+    private final boolean lazyIndexation;
+    private final ParallelKernels kernels;
+
+    public CalculationEngine(MutationRegistry registry, SchemeRegistryClient schemeClient) {
+        this(registry, schemeClient, false);
+    }
+
+    /**
+     * @param lazyIndexation let {@code apply_indexation} defer salary updates until they are read,
+     *                       for requests without patches. Composed factors can differ from the
+     *                       step-by-step result in the last bits of a salary.
+     */
+    public CalculationEngine(MutationRegistry registry, SchemeRegistryClient schemeClient,
+                             boolean lazyIndexation) {
+        this(registry, schemeClient, lazyIndexation, ParallelKernels.SEQUENTIAL);
+    }
 
-    public CalculationEngine(MutationRegistry registry, ObjectMapper mapper, SchemeRegistryClient schemeClient) {
+    /**
+     * @param kernels where per-policy loops run; results are the same on any {@link ParallelKernels}
+     */
+    public CalculationEngine(MutationRegistry registry, SchemeRegistryClient schemeClient,
+                             boolean lazyIndexation, ParallelKernels kernels) {
         this.registry = registry;
-        this.mapper = mapper;
         this.schemeClient = schemeClient;
+        this.lazyIndexation = lazyIndexation;
+        this.kernels = kernels;
     }
 
     private static final char[] HEX = "0123456789abcdef".toCharArray();
@@ -63,133 +90,289 @@ public class CalculationEngine {
         }
     }
 
+    /** Why the endpoints reject {@code request} with a 400 before processing it, or null if they don't. */
+    public static String rejectionReason(CalculationRequest request) {
+        if (request.getTenantId() == null || request.getTenantId().isEmpty()) {
+            return "tenant_id is required";
+        }
+        if (request.getCalculationInstructions() == null ||
+                request.getCalculationInstructions().getMutations() == null ||
+                request.getCalculationInstructions().getMutations().isEmpty()) {
+            return "At least one mutation is required";
+        }
+        return null;
+    }
+
     public CalculationResponse process(CalculationRequest request) {
-        long startNanos = System.nanoTime();
-        Instant startedAt = Instant.now();
+        Calculation calculation = new Calculation(request);
+        Set<String> missingRates;
+        while ((missingRates = calculation.advance()) != null) {
+            // Blocks on the registry: only for callers off the event loop
+            calculation.context.addAccrualRates(schemeClient.getAccrualRates(missingRates));
+        }
+        return calculation.finish();
+    }
 
-        List<Mutation> mutations = request.getCalculationInstructions().getMutations();
-        int mutationCount = mutations.size();
+    /**
+     * {@link #process} without blocking: when a mutation needs accrual rates that are not cached yet,
+     * the calculation suspends on the registry fetch and resumes in its callback, on the caller's
+     * event loop. Already complete when no fetch was needed.
+     */
+    public Future<CalculationResponse> processAsync(CalculationRequest request) {
+        return processAsync(request, 0);
+    }
 
-        Situation situation = new Situation(null);
-        List<CalculationMessage> allMessages = new ArrayList<>(4);
-        List<ProcessedMutation> processedMutations = new ArrayList<>(mutationCount);
+    /**
+     * {@link #processAsync(CalculationRequest)} that waits at most {@code budgetMs} in total for the
+     * scheme registry (0 for the client's configured deadline); schemes not answered in time are
+     * calculated with their cached or the default rate.
+     */
+    public Future<CalculationResponse> processAsync(CalculationRequest request, long budgetMs) {
+        try {
+            long deadlineNanos = schemeClient != null ? schemeClient.deadline(budgetMs) : 0;
+            return resume(new Calculation(request), deadlineNanos);
+        } catch (RuntimeException e) {
+            return Future.failedFuture(e);
+        }
+    }
 
-        String lastSuccessfulMutationId = mutations.get(0).getMutationId();
-        int lastSuccessfulIndex = 0;
-        String lastSuccessfulActualAt = mutations.get(0).getActualAt();
-        boolean anySucceeded = false;
+    private Future<CalculationResponse> resume(Calculation calculation, long deadlineNanos) {
+        Set<String> missingRates;
+        while ((missingRates = calculation.advance()) != null) {
+            Future<Map<String, Double>> rates = schemeClient.accrualRates(missingRates, deadlineNanos);
+            if (!rates.isComplete()) {
+                return rates.compose(fetched -> {
+                    calculation.context.addAccrualRates(fetched);
+                    return resume(calculation, deadlineNanos);
+                });
+            }
+            calculation.context.addAccrualRates(rates.result());
+        }
+        return Future.succeededFuture(calculation.finish());
+    }
 
-        boolean failed = false;
+    /**
+     * Starts registry fetches for every scheme an {@code add_policy} in {@code request} names, if
+     * any mutation uses accrual rates, so they overlap with the mutations before it instead of
+     * starting there. Schemes with a fresh rate are skipped; stale ones are refreshed.
+     */
+    void prefetchSchemes(CalculationRequest request) {
+        Set<String> schemeIds = rateSchemes(request);
+        if (!schemeIds.isEmpty()) {
+            schemeClient.prefetch(schemeIds);
+        }
+    }
 
-        for (int i = 0; i < mutationCount; i++) {
-            Mutation mutation = mutations.get(i);
+    /**
+     * The schemes named by an {@code add_policy} in {@code request}, if any mutation uses accrual
+     * rates; empty otherwise or without a scheme registry. A calculation reads no other rates.
+     */
+    Set<String> rateSchemes(CalculationRequest request) {
+        if (schemeClient == null) {
+            return Set.of();
+        }
+        boolean usesRates = false;
+        Set<String> schemeIds = null;
+        for (Mutation mutation : request.getCalculationInstructions().getMutations()) {
             MutationHandler handler = registry.getHandler(mutation.getMutationDefinitionName());
-
-            ProcessedMutation processed = new ProcessedMutation();
-            processed.setMutation(mutation);
-
             if (handler == null) {
-                // Unknown mutation - treat as critical
-                CalculationMessage msg = new CalculationMessage("CRITICAL", "UNKNOWN_MUTATION",
-                        "Unknown mutation: " + mutation.getMutationDefinitionName());
-                msg.setId(allMessages.size());
-                allMessages.add(msg);
-                processed.setCalculationMessageIndexes(List.of(msg.getId()));
-
-                ArrayNode emptyPatch = mapper.createArrayNode();
-                processed.setForwardPatch(emptyPatch);
-                processed.setBackwardPatch(emptyPatch);
-
-                processedMutations.add(processed);
-                failed = true;
                 break;
             }
+            usesRates |= handler.usesAccrualRates();
+            if (registry.bindProperties(mutation) instanceof AddPolicyProperties policy) {
+                if (schemeIds == null) {
+                    schemeIds = new HashSet<>();
+                }
+                schemeIds.add(policy.schemeId());
+            }
+        }
+        return usesRates && schemeIds != null ? schemeIds : Set.of();
+    }
+
+    /** Metadata of a calculation of {@code durationNanos} that started at {@code startedAt}, with a new id. */
+    static CalculationMetadata metadata(String tenantId, String outcome, Instant startedAt, long durationNanos) {
+        CalculationMetadata metadata = new CalculationMetadata();
+        metadata.setCalculationId(fastUUID());
+        metadata.setTenantId(tenantId);
+        metadata.setCalculationStartedAt(ISO_FORMATTER.format(startedAt));
+        metadata.setCalculationCompletedAt(ISO_FORMATTER.format(startedAt.plusNanos(durationNanos)));
+        metadata.setCalculationDurationMs(durationNanos / 1_000_000);
+        metadata.setCalculationOutcome(outcome);
+        return metadata;
+    }
 
-            MutationResult result = handler.execute(situation, mutation, schemeClient, mapper);
+    /**
+     * One request's mutation loop, resumable at a mutation boundary. {@link #advance} runs mutations
+     * until the next one needs accrual rates that are not in the context yet.
+     */
+    private final class Calculation {
+        private final CalculationRequest request;
+        private final long startNanos = System.nanoTime();
+        private final Instant startedAt = Instant.now();
+        private final List<Mutation> mutations;
+        private final Situation situation = new Situation(null);
+        private final List<CalculationMessage> allMessages = new ArrayList<>(4);
+        private final List<ProcessedMutation> processedMutations;
+        private final MutationContext context;
+        private final Patch emptyForward;
+        private final Patch emptyBackward;
+
+        private String lastSuccessfulMutationId;
+        private int lastSuccessfulIndex;
+        private String lastSuccessfulActualAt;
+        private boolean failed;
+        private int next;
+
+        Calculation(CalculationRequest request) {
+            this.request = request;
+            mutations = request.getCalculationInstructions().getMutations();
+            processedMutations = new ArrayList<>(mutations.size());
+            lastSuccessfulMutationId = mutations.get(0).getMutationId();
+            lastSuccessfulActualAt = mutations.get(0).getActualAt();
+
+            PatchMode patchMode = request.getPatchMode();
+            context = new MutationContext(schemeClient, patchMode, lazyIndexation, kernels);
+            emptyForward = patchMode.forward() ? Patch.EMPTY : null;
+            emptyBackward = patchMode.backward() ? Patch.EMPTY : null;
+
+            prefetchSchemes(request);
+        }
 
-            if (result.isCritical()) {
-                // CRITICAL: state is NOT modified - use empty patches
-                List<CalculationMessage> messages = result.getMessages();
-                List<Integer> messageIndexes = new ArrayList<>(messages.size());
-                for (CalculationMessage msg : messages) {
-                    msg.setId(allMessages.size());
-                    messageIndexes.add(msg.getId());
-                    allMessages.add(msg);
+        /**
+         * Processes mutations from where it left off. Returns the scheme ids the next mutation needs
+         * rates for, to be added to the context before calling again, or null once the loop is done.
+         */
+        Set<String> advance() {
+            int mutationCount = mutations.size();
+            for (; !failed && next < mutationCount; next++) {
+                int i = next;
+                Mutation mutation = mutations.get(i);
+                MutationHandler handler = registry.getHandler(mutation.getMutationDefinitionName());
+
+                if (handler != null && schemeClient != null && handler.usesAccrualRates()) {
+                    Set<String> missing = missingRates();
+                    if (!missing.isEmpty()) {
+                        return missing;
+                    }
                 }
-                processed.setCalculationMessageIndexes(messageIndexes);
 
-                ArrayNode emptyPatch = mapper.createArrayNode();
-                processed.setForwardPatch(emptyPatch);
-                processed.setBackwardPatch(emptyPatch);
+                ProcessedMutation processed = new ProcessedMutation();
+                processed.setMutation(mutation);
 
-                processedMutations.add(processed);
-                failed = true;
-                break;
-            }
-
-            // Success or warnings
-            List<CalculationMessage> messages = result.getMessages();
-            if (!messages.isEmpty()) {
-                List<Integer> messageIndexes = new ArrayList<>(messages.size());
-                for (CalculationMessage msg : messages) {
+                if (handler == null) {
+                    // Unknown mutation - treat as critical
+                    CalculationMessage msg = new CalculationMessage("CRITICAL", "UNKNOWN_MUTATION",
+                            "Unknown mutation: " + mutation.getMutationDefinitionName());
                     msg.setId(allMessages.size());
-                    messageIndexes.add(msg.getId());
                     allMessages.add(msg);
+                    processed.setCalculationMessageIndexes(List.of(msg.getId()));
+
+                    processed.setForwardPatch(emptyForward);
+                    processed.setBackwardPatch(emptyBackward);
+
+                    processedMutations.add(processed);
+                    failed = true;
+                    break;
                 }
-                processed.setCalculationMessageIndexes(messageIndexes);
-            } else {
-                processed.setCalculationMessageIndexes(List.of());
-            }
 
-            // Use handler-provided patches directly (no valueToTree + diff needed)
-            processed.setForwardPatch(result.getForwardPatch());
-            processed.setBackwardPatch(result.getBackwardPatch());
+                registry.bindProperties(mutation);
+                MutationResult result = handler.execute(situation, mutation, context);
+
+                if (result.isCritical()) {
+                    // CRITICAL: state is NOT modified - use empty patches
+                    List<CalculationMessage> messages = result.getMessages();
+                    List<Integer> messageIndexes = new ArrayList<>(messages.size());
+                    for (CalculationMessage msg : messages) {
+                        msg.setId(allMessages.size());
+                        messageIndexes.add(msg.getId());
+                        allMessages.add(msg);
+                    }
+                    processed.setCalculationMessageIndexes(messageIndexes);
+
+                    processed.setForwardPatch(emptyForward);
+                    processed.setBackwardPatch(emptyBackward);
+
+                    processedMutations.add(processed);
+                    failed = true;
+                    break;
+                }
 
-            processedMutations.add(processed);
+                // Success or warnings
+                List<CalculationMessage> messages = result.getMessages();
+                if (!messages.isEmpty()) {
+                    List<Integer> messageIndexes = new ArrayList<>(messages.size());
+                    for (CalculationMessage msg : messages) {
+                        msg.setId(allMessages.size());
+                        messageIndexes.add(msg.getId());
+                        allMessages.add(msg);
+                    }
+                    processed.setCalculationMessageIndexes(messageIndexes);
+                } else {
+                    processed.setCalculationMessageIndexes(List.of());
+                }
 
-            lastSuccessfulMutationId = mutation.getMutationId();
-            lastSuccessfulIndex = i;
-            lastSuccessfulActualAt = mutation.getActualAt();
-            anySucceeded = true;
-        }
+                // Use handler-provided patches directly (null when the patch mode leaves them out)
+                processed.setForwardPatch(result.getForwardPatch());
+                processed.setBackwardPatch(result.getBackwardPatch());
 
-        // Build end_situation
-        SituationSnapshot endSituation = new SituationSnapshot();
-        endSituation.setMutationId(lastSuccessfulMutationId);
-        endSituation.setMutationIndex(lastSuccessfulIndex);
-        endSituation.setActualAt(lastSuccessfulActualAt);
-        endSituation.setSituation(situation);
-
-        // Build initial_situation
-        InitialSituation initialSituation = new InitialSituation(
-                mutations.get(0).getActualAt(),
-                new Situation(null)
-        );
-
-        // Build result
-        CalculationResult calcResult = new CalculationResult();
-        calcResult.setMessages(allMessages);
-        calcResult.setMutations(processedMutations);
-        calcResult.setEndSituation(endSituation);
-        calcResult.setInitialSituation(initialSituation);
-
-        // Build metadata
-        long durationNanos = System.nanoTime() - startNanos;
-        long durationMs = durationNanos / 1_000_000;
-        Instant completedAt = startedAt.plusNanos(durationNanos);
+                processedMutations.add(processed);
 
-        CalculationMetadata metadata = new CalculationMetadata();
-        metadata.setCalculationId(fastUUID());
-        metadata.setTenantId(request.getTenantId());
-        metadata.setCalculationStartedAt(ISO_FORMATTER.format(startedAt));
-        metadata.setCalculationCompletedAt(ISO_FORMATTER.format(completedAt));
-        metadata.setCalculationDurationMs(durationMs);
-        metadata.setCalculationOutcome(failed ? "FAILURE" : "SUCCESS");
+                lastSuccessfulMutationId = mutation.getMutationId();
+                lastSuccessfulIndex = i;
+                lastSuccessfulActualAt = mutation.getActualAt();
+            }
+            return null;
+        }
 
-        CalculationResponse response = new CalculationResponse();
-        response.setCalculationMetadata(metadata);
-        response.setCalculationResult(calcResult);
+        /** Schemes of the current dossier's policies without a rate in the context yet. */
+        private Set<String> missingRates() {
+            Dossier dossier = situation.getDossier();
+            if (dossier == null) {
+                return Set.of();
+            }
+            Map<String, Double> known = context.getAccrualRates();
+            Set<String> missing = null;
+            for (String schemeId : dossier.getPolicyTable().schemes()) {
+                if (!known.containsKey(schemeId)) {
+                    if (missing == null) {
+                        missing = new HashSet<>();
+                    }
+                    missing.add(schemeId);
+                }
+            }
+            return missing == null ? Set.of() : missing;
+        }
 
-        return response;
+        CalculationResponse finish() {
+            // Build end_situation
+            SituationSnapshot endSituation = new SituationSnapshot();
+            endSituation.setMutationId(lastSuccessfulMutationId);
+            endSituation.setMutationIndex(lastSuccessfulIndex);
+            endSituation.setActualAt(lastSuccessfulActualAt);
+            endSituation.setSituation(situation);
+
+            // Build initial_situation
+            InitialSituation initialSituation = new InitialSituation(
+                    mutations.get(0).getActualAt(),
+                    new Situation(null)
+            );
+
+            // Build result
+            CalculationResult calcResult = new CalculationResult();
+            calcResult.setMessages(allMessages);
+            calcResult.setMutations(processedMutations);
+            calcResult.setEndSituation(endSituation);
+            calcResult.setInitialSituation(initialSituation);
+
+            // Build metadata
+            CalculationMetadata metadata = metadata(request.getTenantId(), failed ? "FAILURE" : "SUCCESS",
+                    startedAt, System.nanoTime() - startNanos);
+
+            CalculationResponse response = new CalculationResponse();
+            response.setCalculationMetadata(metadata);
+            response.setCalculationResult(calcResult);
+
+            return response;
+        }
     }
 }
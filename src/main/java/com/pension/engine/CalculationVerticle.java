@@ -1,11 +1,16 @@
 package com.pension.engine;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pension.engine.json.CalculationRequestReader;
+import com.pension.engine.json.CalculationResponseWriter;
 import com.pension.engine.model.request.CalculationRequest;
 import com.pension.engine.model.response.CalculationResponse;
 import com.pension.engine.model.response.ErrorResponse;
 import com.pension.engine.mutation.MutationRegistry;
-import com.pension.engine.scheme.SchemeRegistryClient;
+import com.pension.engine.patch.PatchMode;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
 import io.vertx.core.buffer.Buffer;
@@ -15,27 +20,48 @@ import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 
+import java.io.IOException;
+
 public class CalculationVerticle extends AbstractVerticle {
 
+    private static final int RESPONSE_BUFFER_INITIAL_CAPACITY = 8192;
+
+    private final CalculationEngine engine;
+    private final MutationRegistry registry;
+    private final ResponseMemo memo;
     private ObjectMapper mapper;
-    private CalculationEngine engine;
-    private boolean hasSchemeClient;
+    private CalculationRequestReader requestReader;
+    private CalculationResponseWriter responseWriter;
+    private BatchCalculationHandler batchHandler;
+
+    /**
+     * @param engine shared with the other verticle instances and the gRPC service, see {@link Main}
+     * @param memo   shared response memo for {@code /calculation-requests}, or null to always compute
+     */
+    public CalculationVerticle(CalculationEngine engine, MutationRegistry registry, ResponseMemo memo) {
+        this.engine = engine;
+        this.registry = registry;
+        this.memo = memo;
+    }
 
     @Override
     public void start(Promise<Void> startPromise) {
         mapper = Main.MAPPER;
 
-        MutationRegistry registry = new MutationRegistry();
-
-        // Scheme registry client (only when env var is set)
-        String schemeRegistryUrl = System.getenv("SCHEME_REGISTRY_URL");
-        SchemeRegistryClient schemeClient = null;
-        if (schemeRegistryUrl != null && !schemeRegistryUrl.isEmpty()) {
-            schemeClient = new SchemeRegistryClient(vertx, schemeRegistryUrl);
-        }
-        hasSchemeClient = schemeClient != null;
-
-        engine = new CalculationEngine(registry, mapper, schemeClient);
+        requestReader = new CalculationRequestReader(mapper.getFactory(), registry);
+        responseWriter = new CalculationResponseWriter(mapper.getFactory());
+
+        // Batch lines run on a worker pool shared by all verticle instances
+        int cores = Runtime.getRuntime().availableProcessors();
+        int batchWorkers = Integer.parseInt(System.getenv().getOrDefault("BATCH_WORKERS", String.valueOf(cores)));
+        int batchMaxInFlight = Integer.parseInt(System.getenv().getOrDefault("BATCH_MAX_IN_FLIGHT",
+                String.valueOf(batchWorkers * 8)));
+        int batchMaxLineBytes = Integer.parseInt(System.getenv().getOrDefault("BATCH_MAX_LINE_BYTES",
+                String.valueOf(16 * 1024 * 1024)));
+        batchHandler = new BatchCalculationHandler(
+                new BatchLineProcessor(engine, requestReader, responseWriter, mapper),
+                vertx.createSharedWorkerExecutor("batch-worker", batchWorkers),
+                batchMaxInFlight, batchMaxLineBytes);
 
         int port = Integer.parseInt(System.getenv().getOrDefault("PORT", "8080"));
 
@@ -48,6 +74,8 @@ public class CalculationVerticle extends AbstractVerticle {
         server.requestHandler(req -> {
             if (req.method() == HttpMethod.POST && "/calculation-requests".equals(req.path())) {
                 handleCalculation(req);
+            } else if (req.method() == HttpMethod.POST && "/calculation-requests:batch".equals(req.path())) {
+                handleBatch(req);
             } else {
                 req.response().setStatusCode(404).end();
             }
@@ -60,40 +88,51 @@ public class CalculationVerticle extends AbstractVerticle {
     }
 
     private void handleCalculation(HttpServerRequest req) {
+        PatchMode patchMode;
+        long budgetMs;
+        try {
+            patchMode = patchMode(req);
+            budgetMs = deadlineBudget(req);
+        } catch (IllegalArgumentException e) {
+            sendError(req.response(), 400, e.getMessage());
+            return;
+        }
+
         req.body().onSuccess(buffer -> {
             try {
-                CalculationRequest request = mapper.readValue(
-                        buffer.getBytes(), CalculationRequest.class);
+                CalculationRequest request = requestReader.read(buffer.getBytes());
+                request.setPatchMode(patchMode);
 
                 // Basic request validation
-                if (request.getTenantId() == null || request.getTenantId().isEmpty()) {
-                    sendError(req.response(), 400, "tenant_id is required");
-                    return;
-                }
-                if (request.getCalculationInstructions() == null ||
-                        request.getCalculationInstructions().getMutations() == null ||
-                        request.getCalculationInstructions().getMutations().isEmpty()) {
-                    sendError(req.response(), 400, "At least one mutation is required");
+                String rejection = CalculationEngine.rejectionReason(request);
+                if (rejection != null) {
+                    sendError(req.response(), 400, rejection);
                     return;
                 }
 
-                if (hasSchemeClient) {
-                    // Scheme client uses blocking I/O — must run on worker thread
-                    vertx.<byte[]>executeBlocking(() -> {
-                        CalculationResponse response = engine.process(request);
-                        return mapper.writeValueAsBytes(response);
-                    }, false).onSuccess(responseBytes -> {
-                        sendResponse(req.response(), responseBytes);
-                    }).onFailure(err -> {
-                        sendError(req.response(), 500, "Internal server error: " + err.getMessage());
+                if (memo != null) {
+                    memo.respond(request, budgetMs).onComplete(ar -> {
+                        if (ar.failed()) {
+                            sendError(req.response(), 500, "Internal server error: " + ar.cause().getMessage());
+                        } else {
+                            sendResponse(req.response(), ar.result());
+                        }
                     });
-                } else {
-                    // No blocking I/O — process directly on event loop
-                    CalculationResponse response = engine.process(request);
-                    byte[] responseBytes = mapper.writeValueAsBytes(response);
-                    sendResponse(req.response(), responseBytes);
+                    return;
                 }
 
+                // Runs on the event loop; suspends only while uncached scheme rates are fetched
+                engine.processAsync(request, budgetMs).onComplete(ar -> {
+                    if (ar.failed()) {
+                        sendError(req.response(), 500, "Internal server error: " + ar.cause().getMessage());
+                        return;
+                    }
+                    try {
+                        sendResponse(req.response(), serialize(ar.result()));
+                    } catch (Exception e) {
+                        sendError(req.response(), 500, "Internal server error: " + e.getMessage());
+                    }
+                });
             } catch (Exception e) {
                 sendError(req.response(), 500, "Internal server error: " + e.getMessage());
             }
@@ -102,9 +141,74 @@ public class CalculationVerticle extends AbstractVerticle {
         });
     }
 
-    private void sendResponse(HttpServerResponse resp, byte[] bytes) {
+    private void handleBatch(HttpServerRequest req) {
+        PatchMode patchMode;
+        BatchOrder order;
+        try {
+            patchMode = patchMode(req);
+            order = BatchOrder.parse(req.getParam("order"));
+        } catch (IllegalArgumentException e) {
+            sendError(req.response(), 400, e.getMessage());
+            return;
+        }
+        batchHandler.handle(req, patchMode, order);
+    }
+
+    /**
+     * {@code X-Request-Deadline-Ms}: how many milliseconds the caller has left for this request,
+     * bounding the wait for the scheme registry. 0 when absent.
+     */
+    private static long deadlineBudget(HttpServerRequest req) {
+        String header = req.getHeader("X-Request-Deadline-Ms");
+        if (header == null || header.isEmpty()) {
+            return 0;
+        }
+        try {
+            long budgetMs = Long.parseLong(header.trim());
+            if (budgetMs > 0) {
+                return budgetMs;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid X-Request-Deadline-Ms: " + header);
+    }
+
+    /** {@code patch_mode} query parameter, falling back to the {@code X-Patch-Mode} header. */
+    private static PatchMode patchMode(HttpServerRequest req) {
+        String value = req.getParam("patch_mode");
+        if (value == null) {
+            value = req.getHeader("X-Patch-Mode");
+        }
+        return PatchMode.parse(value);
+    }
+
+    /**
+     * Streams the response into a pooled direct buffer. Ownership passes to {@link #sendResponse},
+     * which returns it to the pool once the write has completed.
+     */
+    private ByteBuf serialize(CalculationResponse response) throws IOException {
+        ByteBuf body = PooledByteBufAllocator.DEFAULT.directBuffer(RESPONSE_BUFFER_INITIAL_CAPACITY);
+        try {
+            responseWriter.write(response, new ByteBufOutputStream(body));
+            return body;
+        } catch (IOException | RuntimeException e) {
+            body.release();
+            throw e;
+        }
+    }
+
+    // Buffer.buffer(ByteBuf) is deprecated in 4.x for the 5.x internal API, with no public replacement yet
+    @SuppressWarnings("deprecation")
+    private void sendResponse(HttpServerResponse resp, ByteBuf body) {
+        // Vert.x wraps the ByteBuf as unreleasable, so the pooled memory is released here
         resp.putHeader("Content-Type", "application/json")
-            .end(Buffer.buffer(bytes));
+            .end(Buffer.buffer(body))
+            .onComplete(ar -> {
+                if (body.refCnt() > 0) {
+                    body.release();
+                }
+            });
     }
 
     private void sendError(HttpServerResponse resp, int status, String message) {
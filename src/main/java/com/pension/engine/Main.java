@@ -5,10 +5,17 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import com.pension.engine.grpc.GrpcVerticle;
+import com.pension.engine.kernel.ParallelKernels;
+import com.pension.engine.mutation.MutationRegistry;
+import com.pension.engine.scheme.SchemeCacheSnapshot;
+import com.pension.engine.scheme.SchemeRegistryClient;
+import com.pension.engine.scheme.StubSchemeRegistry;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxOptions;
 
+import java.util.Arrays;
+
 public class Main {
 
     public static final ObjectMapper MAPPER = new ObjectMapper();
@@ -19,6 +26,14 @@ public class Main {
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && "batch".equals(args[0])) {
+            System.exit(BatchCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && "stub-registry".equals(args[0])) {
+            StubSchemeRegistry.run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
 
         VertxOptions options = new VertxOptions()
@@ -28,12 +43,29 @@ public class Main {
 
         Vertx vertx = Vertx.vertx(options);
 
+        // One engine and scheme client for every REST and gRPC verticle instance
+        MutationRegistry registry = new MutationRegistry();
+        String schemeRegistryUrl = System.getenv("SCHEME_REGISTRY_URL");
+        SchemeRegistryClient schemeClient = null;
+        if (schemeRegistryUrl != null && !schemeRegistryUrl.isEmpty()) {
+            schemeClient = new SchemeRegistryClient(vertx, schemeRegistryUrl);
+            SchemeCacheSnapshot.install(vertx, schemeClient);
+        }
+        boolean lazyIndexation = Boolean.parseBoolean(System.getenv("LAZY_INDEXATION"));
+        CalculationEngine engine = new CalculationEngine(registry, schemeClient, lazyIndexation,
+                ParallelKernels.fromEnv());
+        ResponseMemo memo = ResponseMemo.fromEnv(engine, schemeClient);
+
         DeploymentOptions depOpts = new DeploymentOptions().setInstances(cores);
 
-        vertx.deployVerticle(CalculationVerticle.class.getName(), depOpts)
-                .onSuccess(id -> System.out.println("REST verticle deployed: " + cores + " instances"))
+        vertx.deployVerticle(() -> new CalculationVerticle(engine, registry, memo), depOpts)
+                .compose(id -> {
+                    System.out.println("REST verticle deployed: " + cores + " instances");
+                    return vertx.deployVerticle(() -> new GrpcVerticle(engine), depOpts);
+                })
+                .onSuccess(id -> System.out.println("gRPC verticle deployed: " + cores + " instances"))
                 .onFailure(err -> {
-                    System.err.println("Failed to deploy REST verticle: " + err.getMessage());
+                    System.err.println("Failed to deploy verticles: " + err.getMessage());
                     err.printStackTrace();
                     System.exit(1);
                 });
@@ -0,0 +1,278 @@
+package com.pension.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.pension.engine.json.CalculationResponseWriter;
+import com.pension.engine.model.request.CalculationRequest;
+import com.pension.engine.model.request.Mutation;
+import com.pension.engine.model.response.CalculationMetadata;
+import com.pension.engine.model.response.CalculationResponse;
+import com.pension.engine.scheme.SchemeRegistryClient;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Serialized responses of {@code POST /calculation-requests}, reused for identical requests.
+ *
+ * <p>The key is a SHA-256 over the tenant, the patch mode and every field the engine reads from a
+ * mutation, in a fixed order, so JSON key order, whitespace outside {@code mutation_properties}
+ * and unknown fields do not matter. {@code mutation_properties} are hashed as sent, because the
+ * response echoes them verbatim. With a scheme registry the key also holds the cached rates of the
+ * schemes the request reads (its {@code add_policy} schemes, if a mutation uses rates), so a changed
+ * rate misses while rates of other schemes do not matter. A result is only stored if all of those
+ * rates were cached and unchanged throughout, so the first request after a fetch is not memoized;
+ * a hit still refreshes the request's stale rates in the background, as a computation would. The
+ * key also holds today's date, which {@code create_dossier} checks birth dates against, and a
+ * calculation that runs past midnight is not stored.
+ *
+ * <p>Only the {@code calculation_result} is kept, deflated, in an LRU bounded by
+ * {@code maxBytes}. A hit writes new metadata (calculation id, timestamps, the hit's own duration)
+ * in front of it. Identical requests arriving while one is computed wait for it instead of computing
+ * again, unless they may wait longer for the registry than it does: then they compute their own.
+ */
+final class ResponseMemo {
+
+    private static final int RESPONSE_BUFFER_INITIAL_CAPACITY = 8192;
+    /** Approximate heap cost of an entry besides its bytes: key string, map node, record. */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private record Entry(String outcome, byte[] deflatedResult) {
+        long size() {
+            return deflatedResult.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    private final CalculationEngine engine;
+    private final SchemeRegistryClient schemeClient;
+    private final CalculationResponseWriter writer;
+    private final long maxBytes;
+    /** Guarded by itself; in access order, eldest first. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    /** Computations under way, removed once their entry is stored (or not). */
+    private final ConcurrentHashMap<String, Computation> inFlight = new ConcurrentHashMap<>();
+
+    /** A computation's entry, and when it stops waiting for scheme rates. */
+    private record Computation(Promise<Entry> entry, long deadlineNanos) {}
+
+    ResponseMemo(CalculationEngine engine, SchemeRegistryClient schemeClient, CalculationResponseWriter writer,
+                 long maxBytes) {
+        this.engine = engine;
+        this.schemeClient = schemeClient;
+        this.writer = writer;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * A memo if {@code RESPONSE_CACHE} is {@code true}, bounded by {@code RESPONSE_CACHE_MAX_BYTES}
+     * (default 64 MiB); null otherwise.
+     */
+    static ResponseMemo fromEnv(CalculationEngine engine, SchemeRegistryClient schemeClient) {
+        Map<String, String> env = System.getenv();
+        if (!Boolean.parseBoolean(env.get("RESPONSE_CACHE"))) {
+            return null;
+        }
+        long maxBytes = Long.parseLong(env.getOrDefault("RESPONSE_CACHE_MAX_BYTES", String.valueOf(64L << 20)));
+        return new ResponseMemo(engine, schemeClient, new CalculationResponseWriter(Main.MAPPER.getFactory()), maxBytes);
+    }
+
+    /**
+     * The response body for {@code request}, from the memo or from {@link CalculationEngine#processAsync}
+     * with {@code budgetMs}. The caller owns the returned buffer. Completes on the caller's context.
+     */
+    Future<ByteBuf> respond(CalculationRequest request, long budgetMs) {
+        Instant startedAt = Instant.now();
+        long startNanos = System.nanoTime();
+        Set<String> schemeIds = engine.rateSchemes(request);
+        Map<String, Double> rates = cachedRates(schemeIds);
+        long today = LocalDate.now().toEpochDay();
+        String key = key(request, rates, today);
+
+        Entry hit;
+        synchronized (entries) {
+            hit = entries.get(key);
+        }
+        if (hit != null) {
+            engine.prefetchSchemes(request);
+            return render(request, hit, startedAt, startNanos);
+        }
+
+        // The registry deadline processAsync will use; with less time a computation may use default rates
+        long deadlineNanos = schemeClient != null ? schemeClient.deadline(budgetMs) : 0;
+        Computation computation = new Computation(Promise.promise(), deadlineNanos);
+        Promise<Entry> created = computation.entry();
+        Computation shared = inFlight.putIfAbsent(key, computation);
+        if (shared != null && shared.deadlineNanos() - deadlineNanos >= 0) {
+            return onCaller(shared.entry().future())
+                    .compose(entry -> render(request, entry, startedAt, startNanos));
+        }
+        // Otherwise computed apart from the shared one, which keeps its place in inFlight
+
+        Promise<ByteBuf> body = Promise.promise();
+        engine.processAsync(request, budgetMs).onComplete(ar -> {
+            if (ar.failed()) {
+                inFlight.remove(key, computation);
+                created.fail(ar.cause());
+                body.fail(ar.cause());
+                return;
+            }
+            CalculationResponse response = ar.result();
+            try {
+                Entry entry = new Entry(response.getCalculationMetadata().getCalculationOutcome(), deflate(response));
+                // Rates fetched or changed mid-calculation, or a new day, may or may not match the key
+                if (rates.size() == schemeIds.size() && cachedRates(schemeIds).equals(rates)
+                        && LocalDate.now().toEpochDay() == today) {
+                    put(key, entry);
+                }
+                inFlight.remove(key, computation);
+                created.complete(entry);
+                body.complete(render(response.getCalculationMetadata(), entry));
+            } catch (IOException | RuntimeException e) {
+                inFlight.remove(key, computation);
+                created.tryFail(e);
+                body.tryFail(e);
+            }
+        });
+        return body.future();
+    }
+
+    private Map<String, Double> cachedRates(Set<String> schemeIds) {
+        return schemeClient == null || schemeIds.isEmpty() ? Map.of() : schemeClient.cachedRates(schemeIds);
+    }
+
+    private void put(String key, Entry entry) {
+        if (entry.size() > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            bytes += entry.size() - (previous != null ? previous.size() : 0);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    private Future<ByteBuf> render(CalculationRequest request, Entry entry, Instant startedAt, long startNanos) {
+        try {
+            return Future.succeededFuture(render(CalculationEngine.metadata(request.getTenantId(), entry.outcome(),
+                    startedAt, System.nanoTime() - startNanos), entry));
+        } catch (IOException | RuntimeException e) {
+            return Future.failedFuture(e);
+        }
+    }
+
+    private ByteBuf render(CalculationMetadata metadata, Entry entry) throws IOException {
+        ByteBuf body = PooledByteBufAllocator.DEFAULT.directBuffer(RESPONSE_BUFFER_INITIAL_CAPACITY);
+        try (InflaterInputStream result = new InflaterInputStream(new ByteArrayInputStream(entry.deflatedResult()))) {
+            writer.write(metadata, result, new ByteBufOutputStream(body));
+            return body;
+        } catch (IOException | RuntimeException e) {
+            body.release();
+            throw e;
+        }
+    }
+
+    private byte[] deflate(CalculationResponse response) throws IOException {
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream(RESPONSE_BUFFER_INITIAL_CAPACITY);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(deflated, deflater)) {
+            writer.writeResult(response.getCalculationResult(), out);
+        } finally {
+            deflater.end();
+        }
+        return deflated.toByteArray();
+    }
+
+    /** A shared computation completes on the context of whoever started it; hop back to ours. */
+    private static <T> Future<T> onCaller(Future<T> future) {
+        Context caller = Vertx.currentContext();
+        if (caller == null || future.isComplete()) {
+            return future;
+        }
+        Promise<T> onCaller = Promise.promise();
+        future.onComplete(ar -> {
+            if (Vertx.currentContext() == caller) {
+                onCaller.handle(ar);
+            } else {
+                caller.runOnContext(v -> onCaller.handle(ar));
+            }
+        });
+        return onCaller.future();
+    }
+
+    static String key(CalculationRequest request, Map<String, Double> rates, long epochDay) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, request.getTenantId());
+        update(digest, request.getPatchMode().name());
+        update(digest, Long.toString(epochDay));
+        update(digest, Integer.toString(rates.size()));
+        for (Map.Entry<String, Double> rate : new TreeMap<>(rates).entrySet()) {
+            update(digest, rate.getKey());
+            update(digest, Double.toString(rate.getValue()));
+        }
+        for (Mutation mutation : request.getCalculationInstructions().getMutations()) {
+            update(digest, mutation.getMutationId());
+            update(digest, mutation.getMutationDefinitionName());
+            update(digest, mutation.getMutationType());
+            update(digest, mutation.getActualAt());
+            update(digest, mutation.getDossierId());
+            update(digest, rawProperties(mutation.getMutationProperties()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Length-prefixed, so adjacent fields cannot run into each other; null differs from "". */
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update(new byte[] {-1, -1, -1, -1});
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(new byte[] {(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                (byte) (bytes.length >>> 8), (byte) bytes.length});
+        digest.update(bytes);
+    }
+
+    private static String rawProperties(JsonNode props) {
+        if (props == null) {
+            return null;
+        }
+        if (props instanceof POJONode && ((POJONode) props).getPojo() instanceof RawValue) {
+            return String.valueOf(((RawValue) ((POJONode) props).getPojo()).rawValue());
+        }
+        return props.toString();
+    }
+}
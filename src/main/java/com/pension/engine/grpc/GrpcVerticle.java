@@ -1,53 +1,52 @@
 package com.pension.engine.grpc;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pension.engine.CalculationEngine;
 import com.pension.engine.Main;
-import com.pension.engine.mutation.MutationRegistry;
-import com.pension.engine.scheme.SchemeRegistryClient;
-import io.grpc.Server;
-import io.grpc.ServerBuilder;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
-
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.grpc.server.GrpcServer;
+import io.vertx.grpc.server.GrpcServiceBridge;
+
+/**
+ * Serves {@link PensionCalculationServiceImpl} over HTTP/2 cleartext on {@code GRPC_PORT}, on this
+ * verticle's event loop. Deployed once per event loop next to {@code CalculationVerticle}; Vert.x
+ * spreads connections on the shared port across the instances, and all of them use the engine
+ * built in {@link Main}.
+ */
 public class GrpcVerticle extends AbstractVerticle {
 
-    private Server server;
-
-    @Override
-    public void start(Promise<Void> startPromise) {
-        try {
-            ObjectMapper mapper = Main.MAPPER;
-
-            MutationRegistry registry = new MutationRegistry();
-
-            String schemeRegistryUrl = System.getenv("SCHEME_REGISTRY_URL");
-            SchemeRegistryClient schemeClient = null;
-            if (schemeRegistryUrl != null && !schemeRegistryUrl.isEmpty()) {
-                schemeClient = new SchemeRegistryClient(vertx, schemeRegistryUrl);
-            }
+    private final CalculationEngine engine;
 
-            CalculationEngine engine = new CalculationEngine(registry, mapper, schemeClient);
-
-            int port = Integer.parseInt(System.getenv().getOrDefault("GRPC_PORT", "9090"));
-
-            server = ServerBuilder.forPort(port)
-                    .addService(new PensionCalculationServiceImpl(engine, mapper))
-                    .build()
-                    .start();
-
-            System.out.println("gRPC server started on port " + port);
-            startPromise.complete();
-        } catch (Exception e) {
-            startPromise.fail(e);
-        }
+    public GrpcVerticle(CalculationEngine engine) {
+        this.engine = engine;
     }
 
     @Override
-    public void stop(Promise<Void> stopPromise) {
-        if (server != null) {
-            server.shutdown();
+    public void start(Promise<Void> startPromise) {
+        GrpcServer grpcServer = GrpcServer.server(vertx);
+        int streamWindow = Integer.parseInt(System.getenv().getOrDefault("GRPC_STREAM_WINDOW", "16"));
+        if (streamWindow < 1) {
+            // A window of 0 would never request a message, and every CalculateStream would hang
+            startPromise.fail(new IllegalArgumentException("GRPC_STREAM_WINDOW must be at least 1: " + streamWindow));
+            return;
         }
-        stopPromise.complete();
+        GrpcServiceBridge.bridge(new PensionCalculationServiceImpl(engine, Main.MAPPER, streamWindow)).bind(grpcServer);
+
+        int port = Integer.parseInt(System.getenv().getOrDefault("GRPC_PORT", "9090"));
+
+        HttpServerOptions serverOptions = new HttpServerOptions()
+                .setTcpFastOpen(true)
+                .setTcpNoDelay(true)
+                .setTcpQuickAck(true);
+
+        vertx.createHttpServer(serverOptions)
+                .requestHandler(grpcServer)
+                .listen(port)
+                .onSuccess(s -> {
+                    System.out.println("gRPC server started on port " + port);
+                    startPromise.complete();
+                })
+                .onFailure(startPromise::fail);
     }
 }
@@ -7,46 +7,206 @@ import com.google.protobuf.*;
 import com.google.protobuf.Struct;
 import com.google.protobuf.Value;
 import com.pension.engine.CalculationEngine;
+import com.pension.engine.model.request.AddPolicyProperties;
+import com.pension.engine.model.request.ApplyIndexationProperties;
+import com.pension.engine.model.request.CalculateRetirementBenefitProperties;
+import com.pension.engine.model.request.CreateDossierProperties;
+import com.pension.engine.model.request.ProjectFutureBenefitsProperties;
+import com.pension.engine.patch.Patch;
+import com.pension.engine.patch.PatchMode;
+import com.pension.engine.patch.PatchOperation;
+import com.pension.engine.util.IsoDates;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The gRPC service, bridged onto the Vert.x event loops (see {@link GrpcVerticle}). Calculations
+ * run on the calling event loop through {@link CalculationEngine#processAsync}, like the REST
+ * endpoint.
+ */
 public class PensionCalculationServiceImpl
         extends PensionCalculationServiceGrpc.PensionCalculationServiceImplBase {
 
     private final CalculationEngine engine;
     private final ObjectMapper mapper;
+    private final int streamWindow;
 
-    public PensionCalculationServiceImpl(CalculationEngine engine, ObjectMapper mapper) {
+    /** {@code streamWindow} bounds the requests of one {@link #calculateStream} call in progress at once. */
+    public PensionCalculationServiceImpl(CalculationEngine engine, ObjectMapper mapper, int streamWindow) {
         this.engine = engine;
         this.mapper = mapper;
+        this.streamWindow = streamWindow;
     }
 
     @Override
     public void calculate(
             com.pension.engine.grpc.CalculationRequest protoRequest,
             StreamObserver<com.pension.engine.grpc.CalculationResponse> responseObserver) {
+        run(() -> convertRequestFromProto(protoRequest), this::convertResponseToProto)
+                .onComplete(ar -> reply(responseObserver, ar));
+    }
+
+    /**
+     * {@link #calculate} over one bidirectional stream. Requests are pulled with manual flow
+     * control, at most {@code streamWindow} of them received but not yet answered, and processed
+     * concurrently, so one suspended on a scheme fetch does not hold up the rest. More are only
+     * requested while the transport is ready, so a slow reader backs up into the client's sends
+     * instead of into server memory. Each response goes out as soon as its calculation finishes,
+     * tagged with the request's sequence number; a request that fails gets an error response of
+     * its own and the stream carries on.
+     */
+    @Override
+    public StreamObserver<com.pension.engine.grpc.CalculationRequest> calculateStream(
+            StreamObserver<CalculateStreamResponse> responseObserver) {
+        var serverObserver = (ServerCallStreamObserver<CalculateStreamResponse>) responseObserver;
+        serverObserver.disableAutoRequest();
+        var flow = new StreamFlow(serverObserver, streamWindow);
+        serverObserver.setOnReadyHandler(flow::fill);
+        serverObserver.setOnCancelHandler(() -> flow.cancelled = true);
+        flow.fill();
+
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(com.pension.engine.grpc.CalculationRequest protoRequest) {
+                if (flow.cancelled) {
+                    return;
+                }
+                long seq = flow.received();
+                run(() -> convertRequestFromProto(protoRequest), PensionCalculationServiceImpl.this::convertResponseToProto)
+                        .onComplete(ar -> flow.complete(seq, ar));
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // Client cancelled or the transport broke; nothing left to answer
+                flow.cancelled = true;
+            }
+
+            @Override
+            public void onCompleted() {
+                flow.inputEnded = true;
+                flow.finishIfDone();
+            }
+        };
+    }
+
+    /**
+     * Demand and answers for one {@link #calculateStream} call. Every callback and completion runs
+     * on the call's event loop, so the state needs no synchronization.
+     */
+    private static final class StreamFlow {
+        private final ServerCallStreamObserver<CalculateStreamResponse> observer;
+        private final int window;
+        /** Requested from the transport but not yet received. */
+        private int requested;
+        private long received;
+        private long answered;
+        boolean inputEnded;
+        boolean cancelled;
+
+        StreamFlow(ServerCallStreamObserver<CalculateStreamResponse> observer, int window) {
+            this.observer = observer;
+            this.window = window;
+        }
+
+        /** Counts a request in; returns its sequence number. */
+        long received() {
+            requested--;
+            return received++;
+        }
+
+        /** Requests enough to fill the window, if the transport is ready; otherwise the ready handler calls again. */
+        void fill() {
+            if (cancelled || inputEnded || !observer.isReady()) {
+                return;
+            }
+            int more = window - (int) (received - answered) - requested;
+            if (more > 0) {
+                requested += more;
+                observer.request(more);
+            }
+        }
+
+        void complete(long seq, AsyncResult<com.pension.engine.grpc.CalculationResponse> result) {
+            if (cancelled) {
+                return;
+            }
+            answered++;
+            var reply = CalculateStreamResponse.newBuilder().setSequence(seq);
+            if (result.succeeded()) {
+                reply.setResponse(result.result());
+            } else {
+                Throwable cause = result.cause();
+                reply.setError(cause.getMessage() != null ? cause.getMessage() : cause.toString());
+            }
+            observer.onNext(reply.build());
+            finishIfDone();
+            fill();
+        }
+
+        void finishIfDone() {
+            if (inputEnded && answered == received && !cancelled) {
+                observer.onCompleted();
+            }
+        }
+    }
+
+    /**
+     * Same calculation as {@link #calculate} with typed properties and patches: mutations are bound
+     * straight into their property records and patches are built from the engine's own values,
+     * without a JSON tree or {@code Struct} in between.
+     */
+    @Override
+    public void calculateV2(
+            com.pension.engine.grpc.CalculationRequestV2 protoRequest,
+            StreamObserver<com.pension.engine.grpc.CalculationResponseV2> responseObserver) {
+        run(() -> convertRequestFromProtoV2(protoRequest), response -> convertResponseToProtoV2(response, protoRequest))
+                .onComplete(ar -> reply(responseObserver, ar));
+    }
+
+    /**
+     * Converts and processes a request on the event loop, suspending only while uncached scheme
+     * rates are fetched, then converts the response with {@code toProto}.
+     */
+    private <T> Future<T> run(Supplier<com.pension.engine.model.request.CalculationRequest> request,
+                              Function<com.pension.engine.model.response.CalculationResponse, T> toProto) {
         try {
-            var javaRequest = convertRequestFromProto(protoRequest);
-            var javaResponse = engine.process(javaRequest);
-            var protoResponse = convertResponseToProto(javaResponse);
-            responseObserver.onNext(protoResponse);
-            responseObserver.onCompleted();
-        } catch (Exception e) {
-            responseObserver.onError(io.grpc.Status.INTERNAL
-                    .withDescription(e.getMessage())
-                    .asRuntimeException());
+            return engine.processAsync(request.get()).map(toProto);
+        } catch (RuntimeException e) {
+            return Future.failedFuture(e);
         }
     }
 
+    private static <T> void reply(StreamObserver<T> observer, AsyncResult<T> result) {
+        if (result.succeeded()) {
+            observer.onNext(result.result());
+            observer.onCompleted();
+        } else {
+            observer.onError(internal(result.cause()));
+        }
+    }
+
+    private static io.grpc.StatusRuntimeException internal(Throwable cause) {
+        return io.grpc.Status.INTERNAL
+                .withDescription(cause.getMessage())
+                .asRuntimeException();
+    }
+
     // ── Proto → Java conversion (request) ──
 
     private com.pension.engine.model.request.CalculationRequest convertRequestFromProto(
             com.pension.engine.grpc.CalculationRequest proto) {
         var java = new com.pension.engine.model.request.CalculationRequest();
         java.setTenantId(proto.getTenantId());
+        java.setPatchMode(convertPatchModeFromProto(proto.getPatchMode()));
 
         var instructions = new com.pension.engine.model.request.CalculationInstructions();
         List<com.pension.engine.model.request.Mutation> mutations = new ArrayList<>(
@@ -59,6 +219,15 @@ public class PensionCalculationServiceImpl
         return java;
     }
 
+    private static PatchMode convertPatchModeFromProto(com.pension.engine.grpc.PatchMode proto) {
+        switch (proto) {
+            case PATCH_MODE_NONE: return PatchMode.NONE;
+            case PATCH_MODE_FORWARD: return PatchMode.FORWARD;
+            case PATCH_MODE_FORWARD_AND_BACKWARD: return PatchMode.FORWARD_AND_BACKWARD;
+            default: return PatchMode.DEFAULT;
+        }
+    }
+
     private com.pension.engine.model.request.Mutation convertMutationFromProto(
             com.pension.engine.grpc.Mutation proto) {
         var java = new com.pension.engine.model.request.Mutation();
@@ -134,10 +303,10 @@ public class PensionCalculationServiceImpl
         }
 
         if (java.getForwardPatch() != null) {
-            builder.setForwardPatchToSituationAfterThisMutation(jsonNodeToValue(java.getForwardPatch()));
+            builder.setForwardPatchToSituationAfterThisMutation(jsonNodeToValue(mapper.valueToTree(java.getForwardPatch())));
         }
         if (java.getBackwardPatch() != null) {
-            builder.setBackwardPatchToPreviousSituation(jsonNodeToValue(java.getBackwardPatch()));
+            builder.setBackwardPatchToPreviousSituation(jsonNodeToValue(mapper.valueToTree(java.getBackwardPatch())));
         }
         return builder.build();
     }
@@ -239,6 +408,176 @@ public class PensionCalculationServiceImpl
                 .build();
     }
 
+    // ── v2: typed request ──
+
+    private com.pension.engine.model.request.CalculationRequest convertRequestFromProtoV2(
+            com.pension.engine.grpc.CalculationRequestV2 proto) {
+        var java = new com.pension.engine.model.request.CalculationRequest();
+        java.setTenantId(proto.getTenantId());
+        java.setPatchMode(convertPatchModeFromProto(proto.getPatchMode()));
+
+        var instructions = new com.pension.engine.model.request.CalculationInstructions();
+        List<com.pension.engine.model.request.Mutation> mutations = new ArrayList<>(proto.getMutationsCount());
+        for (var pm : proto.getMutationsList()) {
+            mutations.add(convertMutationFromProtoV2(pm));
+        }
+        instructions.setMutations(mutations);
+        java.setCalculationInstructions(instructions);
+        return java;
+    }
+
+    /**
+     * The definition name follows from which properties message is set; a mutation with none set
+     * gets an empty name and fails as an unknown mutation. Defaults match the JSON readers.
+     */
+    private com.pension.engine.model.request.Mutation convertMutationFromProtoV2(
+            com.pension.engine.grpc.MutationV2 proto) {
+        var java = new com.pension.engine.model.request.Mutation();
+        java.setMutationId(proto.getMutationId());
+        java.setMutationType(proto.getMutationType());
+        java.setActualAt(proto.getActualAt());
+        if (proto.hasDossierId()) {
+            java.setDossierId(proto.getDossierId());
+        }
+        switch (proto.getPropertiesCase()) {
+            case CREATE_DOSSIER: {
+                var p = proto.getCreateDossier();
+                java.setMutationDefinitionName("create_dossier");
+                java.setProperties(new CreateDossierProperties(p.getDossierId(), p.getPersonId(), p.getName(),
+                        p.getBirthDate(), IsoDates.parseEpochDay(p.getBirthDate())));
+                break;
+            }
+            case ADD_POLICY: {
+                var p = proto.getAddPolicy();
+                java.setMutationDefinitionName("add_policy");
+                java.setProperties(new AddPolicyProperties(p.getSchemeId(), p.getEmploymentStartDate(),
+                        IsoDates.parseEpochDay(p.getEmploymentStartDate()), p.getSalary(), p.getPartTimeFactor()));
+                break;
+            }
+            case APPLY_INDEXATION: {
+                var p = proto.getApplyIndexation();
+                String effectiveBefore = p.hasEffectiveBefore() ? p.getEffectiveBefore() : null;
+                java.setMutationDefinitionName("apply_indexation");
+                java.setProperties(new ApplyIndexationProperties(p.getPercentage(),
+                        p.hasSchemeId() ? p.getSchemeId() : null,
+                        effectiveBefore, IsoDates.parseEpochDay(effectiveBefore)));
+                break;
+            }
+            case CALCULATE_RETIREMENT_BENEFIT: {
+                var p = proto.getCalculateRetirementBenefit();
+                java.setMutationDefinitionName("calculate_retirement_benefit");
+                java.setProperties(new CalculateRetirementBenefitProperties(p.getRetirementDate(),
+                        IsoDates.parseEpochDay(p.getRetirementDate())));
+                break;
+            }
+            case PROJECT_FUTURE_BENEFITS: {
+                var p = proto.getProjectFutureBenefits();
+                java.setMutationDefinitionName("project_future_benefits");
+                java.setProperties(new ProjectFutureBenefitsProperties(
+                        p.getProjectionStartDate(), IsoDates.parseEpochDay(p.getProjectionStartDate()),
+                        p.getProjectionEndDate(), IsoDates.parseEpochDay(p.getProjectionEndDate()),
+                        p.getProjectionIntervalMonths()));
+                break;
+            }
+            default:
+                java.setMutationDefinitionName("");
+                break;
+        }
+        return java;
+    }
+
+    // ── v2: typed response ──
+
+    private com.pension.engine.grpc.CalculationResponseV2 convertResponseToProtoV2(
+            com.pension.engine.model.response.CalculationResponse java,
+            com.pension.engine.grpc.CalculationRequestV2 request) {
+        var result = java.getCalculationResult();
+        var builder = com.pension.engine.grpc.CalculationResultV2.newBuilder();
+        for (var msg : result.getMessages()) {
+            builder.addMessages(convertMessageToProto(msg));
+        }
+        // Processed mutations are a prefix of the request's, so the typed originals are echoed as sent
+        var processed = result.getMutations();
+        for (int i = 0; i < processed.size(); i++) {
+            builder.addMutations(convertProcessedMutationToProtoV2(processed.get(i), request.getMutations(i)));
+        }
+        builder.setEndSituation(convertSnapshotToProto(result.getEndSituation()));
+        builder.setInitialSituation(convertInitialSituationToProto(result.getInitialSituation()));
+
+        return com.pension.engine.grpc.CalculationResponseV2.newBuilder()
+                .setCalculationMetadata(convertMetadataToProto(java.getCalculationMetadata()))
+                .setCalculationResult(builder)
+                .build();
+    }
+
+    private com.pension.engine.grpc.ProcessedMutationV2 convertProcessedMutationToProtoV2(
+            com.pension.engine.model.response.ProcessedMutation java,
+            com.pension.engine.grpc.MutationV2 original) {
+        var builder = com.pension.engine.grpc.ProcessedMutationV2.newBuilder();
+        builder.setMutation(original);
+
+        if (java.getCalculationMessageIndexes() != null) {
+            for (int idx : java.getCalculationMessageIndexes()) {
+                builder.addCalculationMessageIndexes(idx);
+            }
+        }
+
+        if (java.getForwardPatch() != null) {
+            builder.setForwardPatchToSituationAfterThisMutation(convertPatchToProto(java.getForwardPatch()));
+        }
+        if (java.getBackwardPatch() != null) {
+            builder.setBackwardPatchToPreviousSituation(convertPatchToProto(java.getBackwardPatch()));
+        }
+        return builder.build();
+    }
+
+    private com.pension.engine.grpc.JsonPatch convertPatchToProto(Patch java) {
+        var builder = com.pension.engine.grpc.JsonPatch.newBuilder();
+        for (PatchOperation op : java.getOperations()) {
+            builder.addOperations(convertPatchOperationToProto(op));
+        }
+        return builder.build();
+    }
+
+    private com.pension.engine.grpc.PatchOperation convertPatchOperationToProto(PatchOperation java) {
+        var builder = com.pension.engine.grpc.PatchOperation.newBuilder()
+                .setOp(convertPatchOpToProto(java.getOp()))
+                .setPath(java.getPath());
+        if (!java.hasValue()) {
+            return builder.build();
+        }
+        Object value = java.getValue();
+        if (value == null) {
+            builder.setNullValue(NullValue.NULL_VALUE);
+        } else if (value instanceof String s) {
+            builder.setStringValue(s);
+        } else if (value instanceof Number n) {
+            builder.setNumberValue(n.doubleValue());
+        } else if (value instanceof com.pension.engine.model.state.Dossier d) {
+            builder.setDossier(convertDossierToProto(d));
+        } else if (value instanceof com.pension.engine.model.state.Policy p) {
+            builder.setPolicy(convertPolicyToProto(p));
+        } else if (value instanceof List<?> list) {
+            var projections = com.pension.engine.grpc.ProjectionList.newBuilder();
+            for (Object proj : list) {
+                projections.addProjections(convertProjectionToProto((com.pension.engine.model.state.Projection) proj));
+            }
+            builder.setProjections(projections);
+        } else {
+            throw new IllegalStateException("Unsupported patch value: " + value.getClass().getName());
+        }
+        return builder.build();
+    }
+
+    private static com.pension.engine.grpc.PatchOp convertPatchOpToProto(String op) {
+        switch (op) {
+            case PatchOperation.ADD: return com.pension.engine.grpc.PatchOp.PATCH_OP_ADD;
+            case PatchOperation.REMOVE: return com.pension.engine.grpc.PatchOp.PATCH_OP_REMOVE;
+            case PatchOperation.REPLACE: return com.pension.engine.grpc.PatchOp.PATCH_OP_REPLACE;
+            default: return com.pension.engine.grpc.PatchOp.PATCH_OP_UNSPECIFIED;
+        }
+    }
+
     // ── Struct/Value ↔ JsonNode conversion ──
 
     private JsonNode structToJsonNode(Struct struct) {
@@ -0,0 +1,141 @@
+package com.pension.engine.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.pension.engine.model.request.CalculationInstructions;
+import com.pension.engine.model.request.CalculationRequest;
+import com.pension.engine.model.request.Mutation;
+import com.pension.engine.mutation.MutationRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming binder for {@code POST /calculation-requests} bodies. {@code mutation_properties} go
+ * straight from the parser into the typed record picked by {@link MutationRegistry}; the only
+ * other thing kept is the raw JSON text of the properties, which is echoed back in the response.
+ * No {@code JsonNode} tree is built for any part of the request.
+ */
+public class CalculationRequestReader {
+
+    private final JsonFactory factory;
+    private final MutationRegistry registry;
+
+    public CalculationRequestReader(JsonFactory factory, MutationRegistry registry) {
+        this.factory = factory;
+        this.registry = registry;
+    }
+
+    public CalculationRequest read(byte[] bytes) throws IOException {
+        return read(bytes, 0, bytes.length);
+    }
+
+    public CalculationRequest read(byte[] bytes, int offset, int length) throws IOException {
+        try (JsonParser p = factory.createParser(bytes, offset, length)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(p, "Calculation request must be a JSON object");
+            }
+            CalculationRequest request = new CalculationRequest();
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                JsonToken t = p.nextToken();
+                switch (field) {
+                    case "tenant_id":
+                        request.setTenantId(p.getValueAsString());
+                        break;
+                    case "calculation_instructions":
+                        if (t == JsonToken.START_OBJECT) {
+                            request.setCalculationInstructions(readInstructions(p, bytes, offset));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                p.skipChildren();
+            }
+            return request;
+        }
+    }
+
+    private CalculationInstructions readInstructions(JsonParser p, byte[] bytes, int offset) throws IOException {
+        CalculationInstructions instructions = new CalculationInstructions();
+        String field;
+        while ((field = p.nextFieldName()) != null) {
+            JsonToken t = p.nextToken();
+            if ("mutations".equals(field) && t == JsonToken.START_ARRAY) {
+                List<Mutation> mutations = new ArrayList<>();
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    if (p.currentToken() != JsonToken.START_OBJECT) {
+                        throw new JsonParseException(p, "Mutation must be a JSON object");
+                    }
+                    mutations.add(readMutation(p, bytes, offset));
+                }
+                instructions.setMutations(mutations);
+            }
+            p.skipChildren();
+        }
+        return instructions;
+    }
+
+    private Mutation readMutation(JsonParser p, byte[] bytes, int offset) throws IOException {
+        Mutation mutation = new Mutation();
+        // Properties that arrive before mutation_definition_name are buffered and bound afterwards
+        TokenBuffer pending = null;
+
+        String field;
+        while ((field = p.nextFieldName()) != null) {
+            p.nextToken();
+            switch (field) {
+                case "mutation_id":
+                    mutation.setMutationId(p.getValueAsString());
+                    break;
+                case "mutation_definition_name":
+                    mutation.setMutationDefinitionName(p.getValueAsString());
+                    break;
+                case "mutation_type":
+                    mutation.setMutationType(p.getValueAsString());
+                    break;
+                case "actual_at":
+                    mutation.setActualAt(p.getValueAsString());
+                    break;
+                case "dossier_id":
+                    mutation.setDossierId(p.getValueAsString());
+                    break;
+                case "mutation_properties": {
+                    int start = (int) p.currentTokenLocation().getByteOffset();
+                    if (mutation.getMutationDefinitionName() != null) {
+                        mutation.setProperties(registry.readProperties(mutation.getMutationDefinitionName(), p));
+                    } else {
+                        pending = new TokenBuffer(p, null);
+                        pending.copyCurrentStructure(p);
+                    }
+                    // Strings are parsed lazily, so a scalar may not be consumed yet; the end offset
+                    // must be past it. A no-op after an object or array.
+                    p.finishToken();
+                    int end = (int) p.currentLocation().getByteOffset();
+                    String raw = new String(bytes, offset + start, end - start, StandardCharsets.UTF_8);
+                    mutation.setMutationProperties(JsonNodeFactory.instance.rawValueNode(new RawValue(raw)));
+                    break;
+                }
+                default:
+                    break;
+            }
+            p.skipChildren();
+        }
+
+        if (pending != null) {
+            try (JsonParser buffered = pending.asParser()) {
+                buffered.nextToken();
+                mutation.setProperties(registry.readProperties(mutation.getMutationDefinitionName(), buffered));
+            }
+        }
+        return mutation;
+    }
+}
@@ -0,0 +1,288 @@
+package com.pension.engine.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.pension.engine.model.request.Mutation;
+import com.pension.engine.model.response.CalculationMessage;
+import com.pension.engine.model.response.CalculationMetadata;
+import com.pension.engine.model.response.CalculationResponse;
+import com.pension.engine.model.response.CalculationResult;
+import com.pension.engine.model.response.InitialSituation;
+import com.pension.engine.model.response.ProcessedMutation;
+import com.pension.engine.model.response.SituationSnapshot;
+import com.pension.engine.model.state.Dossier;
+import com.pension.engine.model.state.Person;
+import com.pension.engine.model.state.Policy;
+import com.pension.engine.model.state.Projection;
+import com.pension.engine.model.state.Situation;
+import com.pension.engine.patch.Patch;
+import com.pension.engine.patch.PatchOperation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Hand-written streaming serializer for {@link CalculationResponse}. Produces exactly the JSON
+ * that databind would (same field order and null handling) but writes it token by token into the
+ * caller's stream, so the body is never materialized as a {@code byte[]}.
+ */
+public class CalculationResponseWriter {
+
+    private static final byte[] METADATA_PREFIX = "{\"calculation_metadata\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESULT_PREFIX = ",\"calculation_result\":".getBytes(StandardCharsets.US_ASCII);
+
+    private final JsonFactory factory;
+
+    public CalculationResponseWriter(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    public void write(CalculationResponse response, OutputStream out) throws IOException {
+        try (JsonGenerator gen = factory.createGenerator(out, JsonEncoding.UTF8)) {
+            write(response, gen);
+        }
+    }
+
+    public void write(CalculationResponse response, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName("calculation_metadata");
+        writeMetadata(gen, response.getCalculationMetadata());
+        gen.writeFieldName("calculation_result");
+        writeResult(gen, response.getCalculationResult());
+        gen.writeEndObject();
+    }
+
+    /** Only the {@code calculation_result} object, for responses kept by {@code ResponseMemo}. */
+    public void writeResult(CalculationResult result, OutputStream out) throws IOException {
+        try (JsonGenerator gen = factory.createGenerator(out, JsonEncoding.UTF8)) {
+            writeResult(gen, result);
+        }
+    }
+
+    /**
+     * The same bytes as {@link #write(CalculationResponse, OutputStream)}, from {@code metadata}
+     * and a {@code calculation_result} written earlier by {@link #writeResult(CalculationResult, OutputStream)}.
+     */
+    public void write(CalculationMetadata metadata, InputStream result, OutputStream out) throws IOException {
+        out.write(METADATA_PREFIX);
+        try (JsonGenerator gen = factory.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeMetadata(gen, metadata);
+        }
+        out.write(RESULT_PREFIX);
+        result.transferTo(out);
+        out.write('}');
+    }
+
+    private static void writeMetadata(JsonGenerator gen, CalculationMetadata metadata) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("calculation_id", metadata.getCalculationId());
+        gen.writeStringField("tenant_id", metadata.getTenantId());
+        gen.writeStringField("calculation_started_at", metadata.getCalculationStartedAt());
+        gen.writeStringField("calculation_completed_at", metadata.getCalculationCompletedAt());
+        gen.writeNumberField("calculation_duration_ms", metadata.getCalculationDurationMs());
+        gen.writeStringField("calculation_outcome", metadata.getCalculationOutcome());
+        gen.writeEndObject();
+    }
+
+    private static void writeResult(JsonGenerator gen, CalculationResult result) throws IOException {
+        gen.writeStartObject();
+
+        gen.writeArrayFieldStart("messages");
+        for (CalculationMessage msg : result.getMessages()) {
+            gen.writeStartObject();
+            gen.writeNumberField("id", msg.getId());
+            gen.writeStringField("level", msg.getLevel());
+            gen.writeStringField("code", msg.getCode());
+            gen.writeStringField("message", msg.getMessage());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("mutations");
+        for (ProcessedMutation processed : result.getMutations()) {
+            writeProcessedMutation(gen, processed);
+        }
+        gen.writeEndArray();
+
+        SituationSnapshot end = result.getEndSituation();
+        gen.writeObjectFieldStart("end_situation");
+        gen.writeStringField("mutation_id", end.getMutationId());
+        gen.writeNumberField("mutation_index", end.getMutationIndex());
+        gen.writeStringField("actual_at", end.getActualAt());
+        gen.writeFieldName("situation");
+        writeSituation(gen, end.getSituation());
+        gen.writeEndObject();
+
+        InitialSituation initial = result.getInitialSituation();
+        gen.writeObjectFieldStart("initial_situation");
+        gen.writeStringField("actual_at", initial.getActualAt());
+        gen.writeFieldName("situation");
+        writeSituation(gen, initial.getSituation());
+        gen.writeEndObject();
+
+        gen.writeEndObject();
+    }
+
+    private static void writeProcessedMutation(JsonGenerator gen, ProcessedMutation processed) throws IOException {
+        gen.writeStartObject();
+        if (processed.getMutation() != null) {
+            gen.writeFieldName("mutation");
+            writeMutation(gen, processed.getMutation());
+        }
+        List<Integer> indexes = processed.getCalculationMessageIndexes();
+        if (indexes != null) {
+            gen.writeArrayFieldStart("calculation_message_indexes");
+            for (int i = 0; i < indexes.size(); i++) {
+                gen.writeNumber(indexes.get(i));
+            }
+            gen.writeEndArray();
+        }
+        if (processed.getForwardPatch() != null) {
+            gen.writeFieldName("forward_patch_to_situation_after_this_mutation");
+            writePatch(gen, processed.getForwardPatch());
+        }
+        if (processed.getBackwardPatch() != null) {
+            gen.writeFieldName("backward_patch_to_previous_situation");
+            writePatch(gen, processed.getBackwardPatch());
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeMutation(JsonGenerator gen, Mutation mutation) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("mutation_id", mutation.getMutationId());
+        gen.writeStringField("mutation_definition_name", mutation.getMutationDefinitionName());
+        gen.writeStringField("mutation_type", mutation.getMutationType());
+        gen.writeStringField("actual_at", mutation.getActualAt());
+        if (mutation.getDossierId() != null) {
+            gen.writeStringField("dossier_id", mutation.getDossierId());
+        }
+        gen.writeFieldName("mutation_properties");
+        JsonNode props = mutation.getMutationProperties();
+        if (props == null) {
+            gen.writeNull();
+        } else if (props instanceof POJONode && ((POJONode) props).getPojo() instanceof RawValue) {
+            // Streamed requests: echo the original text without going through a tree
+            ((RawValue) ((POJONode) props).getPojo()).serialize(gen, null);
+        } else {
+            gen.writeTree(props);
+        }
+        gen.writeEndObject();
+    }
+
+    public static void writePatch(JsonGenerator gen, Patch patch) throws IOException {
+        gen.writeStartArray();
+        List<PatchOperation> operations = patch.getOperations();
+        for (int i = 0; i < operations.size(); i++) {
+            PatchOperation operation = operations.get(i);
+            gen.writeStartObject();
+            gen.writeStringField("op", operation.getOp());
+            gen.writeStringField("path", operation.getPath());
+            if (operation.hasValue()) {
+                gen.writeFieldName("value");
+                writePatchValue(gen, operation.getValue());
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writePatchValue(JsonGenerator gen, Object value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof String) {
+            gen.writeString((String) value);
+        } else if (value instanceof Number) {
+            gen.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Dossier) {
+            writeDossier(gen, (Dossier) value);
+        } else if (value instanceof Policy) {
+            writePolicy(gen, (Policy) value);
+        } else if (value instanceof List) {
+            writeProjections(gen, (List<Projection>) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported patch value: " + value.getClass().getName());
+        }
+    }
+
+    public static void writeSituation(JsonGenerator gen, Situation situation) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName("dossier");
+        if (situation.getDossier() == null) {
+            gen.writeNull();
+        } else {
+            writeDossier(gen, situation.getDossier());
+        }
+        gen.writeEndObject();
+    }
+
+    public static void writeDossier(JsonGenerator gen, Dossier dossier) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("dossier_id", dossier.getDossierId());
+        gen.writeStringField("status", dossier.getStatus());
+        gen.writeStringField("retirement_date", dossier.getRetirementDate());
+
+        gen.writeArrayFieldStart("persons");
+        for (Person person : dossier.getPersons()) {
+            gen.writeStartObject();
+            gen.writeStringField("person_id", person.getPersonId());
+            gen.writeStringField("role", person.getRole());
+            gen.writeStringField("name", person.getName());
+            gen.writeStringField("birth_date", person.getBirthDate());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("policies");
+        List<Policy> policies = dossier.getPolicies();
+        for (int i = 0; i < policies.size(); i++) {
+            writePolicy(gen, policies.get(i));
+        }
+        gen.writeEndArray();
+
+        gen.writeEndObject();
+    }
+
+    public static void writePolicy(JsonGenerator gen, Policy policy) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("policy_id", policy.getPolicyId());
+        gen.writeStringField("scheme_id", policy.getSchemeId());
+        gen.writeStringField("employment_start_date", policy.getEmploymentStartDate());
+        gen.writeNumberField("salary", policy.getSalary());
+        gen.writeNumberField("part_time_factor", policy.getPartTimeFactor());
+        gen.writeFieldName("attainable_pension");
+        if (policy.getAttainablePension() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(policy.getAttainablePension().doubleValue());
+        }
+        gen.writeFieldName("projections");
+        writeProjections(gen, policy.getProjections());
+        gen.writeEndObject();
+    }
+
+    public static void writeProjections(JsonGenerator gen, List<Projection> projections) throws IOException {
+        if (projections == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartArray();
+        for (int i = 0; i < projections.size(); i++) {
+            Projection projection = projections.get(i);
+            gen.writeStartObject();
+            gen.writeStringField("date", projection.getDate());
+            gen.writeNumberField("projected_pension", projection.getProjectedPension());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+}
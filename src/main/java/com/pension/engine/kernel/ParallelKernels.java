@@ -0,0 +1,224 @@
+package com.pension.engine.kernel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits per-policy loops across a dedicated {@link ForkJoinPool} once they are big enough to pay
+ * for it. Only element-wise maps go through here: every element is computed by the same code
+ * whichever thread runs it, and reductions stay sequential in the caller, so results are
+ * bit-identical to a single-threaded run.
+ *
+ * <p>Whether a loop is split is decided per {@link Site} from its estimated cost: elements x
+ * units per element x measured nanoseconds per unit, against the measured cost of a dispatch to
+ * the pool. The per-unit cost starts from a calibration loop and then tracks what the site
+ * actually takes. Ranges are split on multiples of 64 elements, so two tasks never write the same
+ * word of a per-row bitmap or, in practice, the same cache line of a column.
+ */
+public final class ParallelKernels {
+
+    /** Call sites, each with its own running cost estimate. */
+    public enum Site { RETIREMENT, INDEXATION, PROJECTION }
+
+    @FunctionalInterface
+    public interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /** Runs everything inline on the calling thread. */
+    public static final ParallelKernels SEQUENTIAL = new ParallelKernels();
+
+    private static final int ALIGN = 64;
+    private static final int CHUNKS_PER_THREAD = 4;
+    /** Only split when the estimated saving is at least this many dispatches. */
+    private static final double MIN_GAIN_DISPATCHES = 2.0;
+    /** Weight of the newest sample in the per-site cost estimate. */
+    private static final double SMOOTHING = 0.2;
+
+    private static ParallelKernels shared;
+    /** Keeps the calibration loop's result observable so it is not optimized away. */
+    private static volatile double sink;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final long dispatchNanos;
+    private final long fixedThreshold;
+    private final double[] nanosPerUnit = new double[Site.values().length];
+
+    private ParallelKernels() {
+        this.pool = null;
+        this.parallelism = 1;
+        this.dispatchNanos = Long.MAX_VALUE;
+        this.fixedThreshold = 0;
+    }
+
+    /**
+     * @param threads        pool size
+     * @param fixedThreshold if positive, split any loop of at least this many units and skip the
+     *                       cost model (for benchmarking the two paths against each other)
+     */
+    public ParallelKernels(int threads, long fixedThreshold) {
+        this.parallelism = Math.max(1, threads);
+        this.fixedThreshold = fixedThreshold;
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("kernel-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+        this.dispatchNanos = calibrateDispatch();
+        double unit = calibrateUnit();
+        for (int s = 0; s < nanosPerUnit.length; s++) {
+            nanosPerUnit[s] = unit;
+        }
+    }
+
+    /**
+     * The process-wide instance configured by {@code PARALLEL_KERNELS} (off by default),
+     * {@code PARALLEL_THREADS} (default: available processors) and {@code PARALLEL_THRESHOLD}
+     * (default: calibrated). Calibrates once, on first use.
+     */
+    public static synchronized ParallelKernels fromEnv() {
+        if (!Boolean.parseBoolean(System.getenv("PARALLEL_KERNELS"))) {
+            return SEQUENTIAL;
+        }
+        if (shared == null) {
+            int threads = Integer.parseInt(System.getenv().getOrDefault("PARALLEL_THREADS",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            long threshold = Long.parseLong(System.getenv().getOrDefault("PARALLEL_THRESHOLD", "0"));
+            shared = new ParallelKernels(threads, threshold);
+        }
+        return shared;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Whether a loop of {@code size} elements costing {@code unitsPerElement} each would be split.
+     * For callers that keep a separate sequential path (e.g. one that also builds patches).
+     */
+    public boolean shouldSplit(Site site, int size, long unitsPerElement) {
+        if (pool == null || size < 2 * ALIGN) {
+            return false;
+        }
+        double units = (double) size * unitsPerElement;
+        if (fixedThreshold > 0) {
+            return units >= fixedThreshold;
+        }
+        double work = units * nanosPerUnit[site.ordinal()];
+        double saving = work - work / parallelism;
+        return saving >= MIN_GAIN_DISPATCHES * dispatchNanos;
+    }
+
+    /**
+     * Runs {@code body} over {@code [0, size)}: inline if the loop is too small to split, otherwise
+     * over chunks on the pool, waiting for all of them. The body must only write state owned by
+     * its own range.
+     */
+    public void forRange(Site site, int size, long unitsPerElement, RangeBody body) {
+        if (size <= 0) {
+            return;
+        }
+        if (pool == null || size < 2 * ALIGN) {
+            body.run(0, size);
+            return;
+        }
+        boolean split = shouldSplit(site, size, unitsPerElement);
+        long start = System.nanoTime();
+        if (split) {
+            int chunk = chunkSize(size);
+            pool.invoke(new RangeAction(body, 0, size, chunk));
+        } else {
+            body.run(0, size);
+        }
+        long elapsed = System.nanoTime() - start;
+        double busy = split ? Math.max(0, elapsed - dispatchNanos) * (double) parallelism : elapsed;
+        record(site, busy / ((double) size * Math.max(1, unitsPerElement)));
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    public long dispatchNanos() {
+        return dispatchNanos;
+    }
+
+    private int chunkSize(int size) {
+        int target = (size + parallelism * CHUNKS_PER_THREAD - 1) / (parallelism * CHUNKS_PER_THREAD);
+        return Math.max(ALIGN, (target + ALIGN - 1) / ALIGN * ALIGN);
+    }
+
+    // Racy on purpose: a lost update only delays the estimate by one sample
+    private void record(Site site, double sample) {
+        int s = site.ordinal();
+        nanosPerUnit[s] += SMOOTHING * (sample - nanosPerUnit[s]);
+    }
+
+    /** Median round trip of an empty split across all workers. */
+    private long calibrateDispatch() {
+        int size = parallelism * CHUNKS_PER_THREAD * ALIGN;
+        RangeBody empty = (from, to) -> { };
+        long[] samples = new long[64];
+        for (int warmup = 0; warmup < 2; warmup++) {
+            for (int i = 0; i < samples.length; i++) {
+                long start = System.nanoTime();
+                pool.invoke(new RangeAction(empty, 0, size, ALIGN));
+                samples[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(samples);
+        return Math.max(1, samples[samples.length / 2]);
+    }
+
+    /** Nanoseconds per element of a loop shaped like the years-of-service map. */
+    private static double calibrateUnit() {
+        int size = 1 << 14;
+        int[] days = new int[size];
+        double[] out = new double[size];
+        for (int i = 0; i < size; i++) {
+            days[i] = i * 7;
+        }
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < 40; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                long diff = 200_000L - days[i];
+                out[i] = diff >= 0 ? diff / 365.25 : 0;
+            }
+            best = Math.min(best, (double) (System.nanoTime() - start) / size);
+        }
+        sink = out[size - 1];
+        return Math.max(0.1, best);
+    }
+
+    private static final class RangeAction extends RecursiveAction {
+        private final RangeBody body;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        RangeAction(RangeBody body, int from, int to, int chunk) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                body.run(from, to);
+                return;
+            }
+            // Split on a chunk boundary so every leaf starts at a multiple of the alignment
+            int chunks = (to - from + chunk - 1) / chunk;
+            int mid = from + (chunks / 2) * chunk;
+            invokeAll(new RangeAction(body, from, mid, chunk), new RangeAction(body, mid, to, chunk));
+        }
+    }
+}
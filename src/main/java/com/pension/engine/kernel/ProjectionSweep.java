@@ -0,0 +1,63 @@
+package com.pension.engine.kernel;
+
+import java.util.Arrays;
+
+/**
+ * Per-date aggregates of the projection formula in one sweep over policies sorted by start day.
+ *
+ * <p>For a projection day {@code t} only policies with {@code start <= t} contribute, each with
+ * {@code years = (t - start) / 365.25}. Both aggregates are linear in {@code t} over the started
+ * set, so with running sums they cost O(1) per date once the policies are sorted:
+ * <pre>
+ *   total days   = k * t - sum(start)
+ *   weighted avg = (t * sum(salary) - sum(salary * start)) / total days
+ * </pre>
+ * Days are taken relative to the first projection date so the products stay small; the day sums
+ * are exact {@code long}s, and only the salary sums are floating point.
+ */
+public final class ProjectionSweep {
+
+    private ProjectionSweep() {}
+
+    /**
+     * Weighted average effective salary at each of {@code dates} (ascending epoch days), or 0 where
+     * no policy has any service yet. {@code startDays} and {@code effectiveSalaries} are read for
+     * indexes {@code [0, policyCount)}.
+     */
+    public static double[] weightedAverages(int[] startDays, double[] effectiveSalaries, int policyCount, int[] dates) {
+        double[] averages = new double[dates.length];
+        if (dates.length == 0) {
+            return averages;
+        }
+        long base = dates[0];
+
+        // Sort by start day; the policy index rides in the low bits
+        long[] order = new long[policyCount];
+        for (int i = 0; i < policyCount; i++) {
+            order[i] = ((long) startDays[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int next = 0;
+        long started = 0;
+        long startSum = 0;
+        double salarySum = 0;
+        double salaryStartSum = 0;
+
+        for (int d = 0; d < dates.length; d++) {
+            long t = dates[d] - base;
+            while (next < policyCount && (order[next] >> 32) - base <= t) {
+                int i = (int) order[next];
+                long start = (order[next] >> 32) - base;
+                started++;
+                startSum += start;
+                salarySum += effectiveSalaries[i];
+                salaryStartSum += effectiveSalaries[i] * start;
+                next++;
+            }
+            long totalDays = started * t - startSum;
+            averages[d] = totalDays > 0 ? (t * salarySum - salaryStartSum) / totalDays : 0;
+        }
+        return averages;
+    }
+}
@@ -0,0 +1,71 @@
+package com.pension.engine.kernel;
+
+/**
+ * The arithmetic of the retirement and projection formulas over primitive columns. Each method
+ * fills {@code [from, to)} of its output; the ranges are what {@link ParallelKernels} hands out.
+ *
+ * <p>Two implementations: {@link ScalarSalaryKernels}, plain loops, and
+ * {@code VectorSalaryKernels}, the same formulas on {@code jdk.incubator.vector}, compiled in the
+ * {@code vector} source set. Element-wise
+ * results are identical between them; only {@link #weightedSum} differs, in the last bits, since
+ * the vector version adds in lanes. The vector kernels are chosen at startup with
+ * {@code VECTOR_KERNELS=true} and need {@code --add-modules jdk.incubator.vector}; without the
+ * module the scalar kernels are used.
+ */
+public interface SalaryKernels {
+
+    /** {@code years[i] = max(0, toDay - startDays[i]) / 365.25}, with 0 for a start after {@code toDay}. */
+    void yearsOfService(int[] startDays, long toDay, double[] years, int from, int to);
+
+    /** {@code sum(salaries[i] * partTimeFactors[i] * years[i])} over {@code [0, count)}. */
+    double weightedSum(double[] salaries, double[] partTimeFactors, double[] years, int count);
+
+    /** {@code out[i] = weightedAvg * years[i] * rates[rateIndex[i]]}. */
+    void accruedPensions(double weightedAvg, double[] years, double[] rates, int[] rateIndex,
+                         double[] out, int from, int to);
+
+    /** {@code out[i] = annualPension * (years[i] / totalYears)}. */
+    void proportionalPensions(double annualPension, double[] years, double totalYears,
+                              double[] out, int from, int to);
+
+    /**
+     * One policy's row of the projection grid:
+     * {@code out[n] = weightedAvgs[n] * years(startDay, dateDays[n]) * accrualRate} for {@code n < count}.
+     * Days are epoch days held exactly as doubles.
+     */
+    void projectionRow(double[] dateDays, double[] weightedAvgs, double startDay, double accrualRate,
+                       double[] out, int count);
+
+    /** The kernels selected at startup. */
+    static SalaryKernels active() {
+        return Selected.INSTANCE;
+    }
+
+    /**
+     * {@code VectorSalaryKernels}, loaded by name so nothing else has to compile against, or load,
+     * the incubator module. Fails without {@code --add-modules jdk.incubator.vector}.
+     */
+    static SalaryKernels vector() throws ReflectiveOperationException {
+        return (SalaryKernels) Class.forName("com.pension.engine.kernel.VectorSalaryKernels")
+                .getField("INSTANCE").get(null);
+    }
+
+    final class Selected {
+        static final SalaryKernels INSTANCE = select();
+
+        private Selected() {}
+
+        private static SalaryKernels select() {
+            if (!Boolean.parseBoolean(System.getenv("VECTOR_KERNELS"))) {
+                return ScalarSalaryKernels.INSTANCE;
+            }
+            try {
+                return vector();
+            } catch (LinkageError | ReflectiveOperationException e) {
+                System.err.println("VECTOR_KERNELS=true but the Vector API is unavailable ("
+                        + e + "); start the JVM with --add-modules jdk.incubator.vector. Using scalar kernels.");
+                return ScalarSalaryKernels.INSTANCE;
+            }
+        }
+    }
+}
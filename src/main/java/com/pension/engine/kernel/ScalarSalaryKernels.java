@@ -0,0 +1,52 @@
+package com.pension.engine.kernel;
+
+/** Plain loops; the reference for {@link SalaryKernels}, with sums in index order. */
+public final class ScalarSalaryKernels implements SalaryKernels {
+
+    public static final ScalarSalaryKernels INSTANCE = new ScalarSalaryKernels();
+
+    private ScalarSalaryKernels() {}
+
+    @Override
+    public void yearsOfService(int[] startDays, long toDay, double[] years, int from, int to) {
+        for (int i = from; i < to; i++) {
+            long daysDiff = toDay - startDays[i];
+            years[i] = daysDiff < 0 ? 0 : daysDiff / 365.25;
+        }
+    }
+
+    @Override
+    public double weightedSum(double[] salaries, double[] partTimeFactors, double[] years, int count) {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += salaries[i] * partTimeFactors[i] * years[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void accruedPensions(double weightedAvg, double[] years, double[] rates, int[] rateIndex,
+                                double[] out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            out[i] = weightedAvg * years[i] * rates[rateIndex[i]];
+        }
+    }
+
+    @Override
+    public void proportionalPensions(double annualPension, double[] years, double totalYears,
+                                     double[] out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            out[i] = annualPension * (years[i] / totalYears);
+        }
+    }
+
+    @Override
+    public void projectionRow(double[] dateDays, double[] weightedAvgs, double startDay, double accrualRate,
+                              double[] out, int count) {
+        for (int n = 0; n < count; n++) {
+            double daysDiff = dateDays[n] - startDay;
+            double years = daysDiff >= 0 ? daysDiff / 365.25 : 0;
+            out[n] = weightedAvgs[n] * years * accrualRate;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.pension.engine.model.request;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.pension.engine.util.IsoDates;
+
+import java.io.IOException;
+
+/** {@code employmentStartDay} is the parsed start date, or {@link IsoDates#INVALID}. */
+public record AddPolicyProperties(
+        String schemeId,
+        String employmentStartDate,
+        int employmentStartDay,
+        double salary,
+        double partTimeFactor
+) implements MutationProperties {
+
+    public static AddPolicyProperties read(JsonParser p) throws IOException {
+        String schemeId = "";
+        String employmentStartDate = "";
+        double salary = 0;
+        double partTimeFactor = 0;
+
+        if (p.currentToken() == JsonToken.START_OBJECT) {
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                p.nextToken();
+                switch (field) {
+                    case "scheme_id": schemeId = p.getValueAsString(""); break;
+                    case "employment_start_date": employmentStartDate = p.getValueAsString(""); break;
+                    case "salary": salary = p.getValueAsDouble(); break;
+                    case "part_time_factor": partTimeFactor = p.getValueAsDouble(); break;
+                    default: break;
+                }
+                p.skipChildren();
+            }
+        } else {
+            p.skipChildren();
+        }
+        return new AddPolicyProperties(schemeId, employmentStartDate, IsoDates.parseEpochDay(employmentStartDate),
+                salary, partTimeFactor);
+    }
+}
@@ -0,0 +1,43 @@
+package com.pension.engine.model.request;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.pension.engine.util.IsoDates;
+
+import java.io.IOException;
+
+/**
+ * {@code schemeId} and {@code effectiveBefore} are null when the filter is absent;
+ * {@code effectiveBeforeDay} is the parsed cut-off, or {@link IsoDates#INVALID}.
+ */
+public record ApplyIndexationProperties(
+        double percentage,
+        String schemeId,
+        String effectiveBefore,
+        int effectiveBeforeDay
+) implements MutationProperties {
+
+    public static ApplyIndexationProperties read(JsonParser p) throws IOException {
+        double percentage = 0;
+        String schemeId = null;
+        String effectiveBefore = null;
+
+        if (p.currentToken() == JsonToken.START_OBJECT) {
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                p.nextToken();
+                switch (field) {
+                    case "percentage": percentage = p.getValueAsDouble(); break;
+                    case "scheme_id": schemeId = p.getValueAsString(); break;
+                    case "effective_before": effectiveBefore = p.getValueAsString(); break;
+                    default: break;
+                }
+                p.skipChildren();
+            }
+        } else {
+            p.skipChildren();
+        }
+        return new ApplyIndexationProperties(percentage, schemeId, effectiveBefore,
+                IsoDates.parseEpochDay(effectiveBefore));
+    }
+}
@@ -0,0 +1,32 @@
+package com.pension.engine.model.request;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.pension.engine.util.IsoDates;
+
+import java.io.IOException;
+
+/** {@code retirementDay} is the parsed retirement date, or {@link IsoDates#INVALID}. */
+public record CalculateRetirementBenefitProperties(
+        String retirementDate,
+        int retirementDay
+) implements MutationProperties {
+
+    public static CalculateRetirementBenefitProperties read(JsonParser p) throws IOException {
+        String retirementDate = "";
+
+        if (p.currentToken() == JsonToken.START_OBJECT) {
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                p.nextToken();
+                if ("retirement_date".equals(field)) {
+                    retirementDate = p.getValueAsString("");
+                }
+                p.skipChildren();
+            }
+        } else {
+            p.skipChildren();
+        }
+        return new CalculateRetirementBenefitProperties(retirementDate, IsoDates.parseEpochDay(retirementDate));
+    }
+}
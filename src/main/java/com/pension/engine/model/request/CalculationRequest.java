@@ -1,6 +1,8 @@
 package com.pension.engine.model.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.pension.engine.patch.PatchMode;
 
 public class CalculationRequest {
 
@@ -10,6 +12,10 @@ public class CalculationRequest {
     @JsonProperty("calculation_instructions")
     private CalculationInstructions calculationInstructions;
 
+    /** Transport option (query parameter, header or gRPC field), not part of the JSON body. */
+    @JsonIgnore
+    private PatchMode patchMode = PatchMode.DEFAULT;
+
     public String getTenantId() { return tenantId; }
     public void setTenantId(String tenantId) { this.tenantId = tenantId; }
 
@@ -17,4 +23,7 @@ public class CalculationRequest {
     public void setCalculationInstructions(CalculationInstructions calculationInstructions) {
         this.calculationInstructions = calculationInstructions;
     }
+
+    public PatchMode getPatchMode() { return patchMode; }
+    public void setPatchMode(PatchMode patchMode) { this.patchMode = patchMode; }
 }
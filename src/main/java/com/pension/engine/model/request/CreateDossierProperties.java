@@ -0,0 +1,42 @@
+package com.pension.engine.model.request;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.pension.engine.util.IsoDates;
+
+import java.io.IOException;
+
+/** {@code birthDay} is the parsed birth date, or {@link IsoDates#INVALID}. */
+public record CreateDossierProperties(
+        String dossierId,
+        String personId,
+        String name,
+        String birthDate,
+        int birthDay
+) implements MutationProperties {
+
+    public static CreateDossierProperties read(JsonParser p) throws IOException {
+        String dossierId = "";
+        String personId = "";
+        String name = "";
+        String birthDate = "";
+
+        if (p.currentToken() == JsonToken.START_OBJECT) {
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                p.nextToken();
+                switch (field) {
+                    case "dossier_id": dossierId = p.getValueAsString(""); break;
+                    case "person_id": personId = p.getValueAsString(""); break;
+                    case "name": name = p.getValueAsString(""); break;
+                    case "birth_date": birthDate = p.getValueAsString(""); break;
+                    default: break;
+                }
+                p.skipChildren();
+            }
+        } else {
+            p.skipChildren();
+        }
+        return new CreateDossierProperties(dossierId, personId, name, birthDate, IsoDates.parseEpochDay(birthDate));
+    }
+}
@@ -1,5 +1,6 @@
 package com.pension.engine.model.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -22,9 +23,16 @@ public class Mutation {
     @JsonProperty("dossier_id")
     private String dossierId;
 
+    /**
+     * Echoed back verbatim in the response. Requests read by {@code CalculationRequestReader} carry
+     * the raw JSON text here (a {@code RawValue} node) rather than a parsed tree.
+     */
     @JsonProperty("mutation_properties")
     private JsonNode mutationProperties;
 
+    @JsonIgnore
+    private MutationProperties properties;
+
     public String getMutationId() { return mutationId; }
     public void setMutationId(String mutationId) { this.mutationId = mutationId; }
 
@@ -44,4 +52,7 @@ public class Mutation {
 
     public JsonNode getMutationProperties() { return mutationProperties; }
     public void setMutationProperties(JsonNode mutationProperties) { this.mutationProperties = mutationProperties; }
+
+    public MutationProperties getProperties() { return properties; }
+    public void setProperties(MutationProperties properties) { this.properties = properties; }
 }
@@ -0,0 +1,8 @@
+package com.pension.engine.model.request;
+
+/**
+ * Typed {@code mutation_properties} of a single mutation. Each mutation definition has its own
+ * record with primitive fields, bound once at ingest by its {@code MutationHandler}.
+ */
+public interface MutationProperties {
+}
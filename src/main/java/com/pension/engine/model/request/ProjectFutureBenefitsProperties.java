@@ -0,0 +1,43 @@
+package com.pension.engine.model.request;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.pension.engine.util.IsoDates;
+
+import java.io.IOException;
+
+/** The {@code *Day} components are the parsed dates, or {@link IsoDates#INVALID}. */
+public record ProjectFutureBenefitsProperties(
+        String projectionStartDate,
+        int projectionStartDay,
+        String projectionEndDate,
+        int projectionEndDay,
+        int projectionIntervalMonths
+) implements MutationProperties {
+
+    public static ProjectFutureBenefitsProperties read(JsonParser p) throws IOException {
+        String projectionStartDate = "";
+        String projectionEndDate = "";
+        int projectionIntervalMonths = 0;
+
+        if (p.currentToken() == JsonToken.START_OBJECT) {
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                p.nextToken();
+                switch (field) {
+                    case "projection_start_date": projectionStartDate = p.getValueAsString(""); break;
+                    case "projection_end_date": projectionEndDate = p.getValueAsString(""); break;
+                    case "projection_interval_months": projectionIntervalMonths = p.getValueAsInt(); break;
+                    default: break;
+                }
+                p.skipChildren();
+            }
+        } else {
+            p.skipChildren();
+        }
+        return new ProjectFutureBenefitsProperties(
+                projectionStartDate, IsoDates.parseEpochDay(projectionStartDate),
+                projectionEndDate, IsoDates.parseEpochDay(projectionEndDate),
+                projectionIntervalMonths);
+    }
+}
@@ -0,0 +1,33 @@
+package com.pension.engine.model.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Written in place of a {@link CalculationResponse} for a batch line that could not be processed. */
+public class BatchError {
+
+    @JsonProperty("line")
+    private long line;
+
+    @JsonProperty("status")
+    private int status;
+
+    @JsonProperty("message")
+    private String message;
+
+    public BatchError() {}
+
+    public BatchError(long line, int status, String message) {
+        this.line = line;
+        this.status = status;
+        this.message = message;
+    }
+
+    public long getLine() { return line; }
+    public void setLine(long line) { this.line = line; }
+
+    public int getStatus() { return status; }
+    public void setStatus(int status) { this.status = status; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
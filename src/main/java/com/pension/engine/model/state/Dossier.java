@@ -3,11 +3,15 @@ package com.pension.engine.model.state;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
 
 @JsonInclude(JsonInclude.Include.ALWAYS)
+@JsonPropertyOrder({"dossier_id", "status", "retirement_date", "persons", "policies"})
 public class Dossier {
 
     @JsonProperty("dossier_id")
@@ -22,15 +26,24 @@ public class Dossier {
     @JsonProperty("persons")
     private List<Person> persons;
 
-    @JsonProperty("policies")
-    private List<Policy> policies;
+    /** Columnar storage; {@link #policyView} exposes it as the {@code policies} list. */
+    @JsonIgnore
+    private PolicyTable policyTable = new PolicyTable();
+
+    @JsonIgnore
+    private final List<Policy> policyView = new PolicyView();
 
     @JsonIgnore
     private int policySequence = 0;
 
+    @JsonIgnore
+    private final PolicyIndex policyIndex = new PolicyIndex();
+
+    @JsonIgnore
+    private final PendingIndexations pendingIndexations = new PendingIndexations();
+
     public Dossier() {
         this.persons = new ArrayList<>(1);
-        this.policies = new ArrayList<>(4);
     }
 
     public String getDossierId() { return dossierId; }
@@ -45,10 +58,130 @@ public class Dossier {
     public List<Person> getPersons() { return persons; }
     public void setPersons(List<Person> persons) { this.persons = persons; }
 
-    public List<Policy> getPolicies() { return policies; }
-    public void setPolicies(List<Policy> policies) { this.policies = policies; }
+    /**
+     * Read-only list of row views over {@link #getPolicyTable()}; new policies go through
+     * {@link #addPolicy}. Applies any deferred indexations first, so callers always see effective
+     * salaries.
+     */
+    @JsonProperty("policies")
+    public List<Policy> getPolicies() {
+        applyPendingIndexations();
+        return policyView;
+    }
+
+    /** The policies as columns, for handler loops. Applies any deferred indexations first. */
+    @JsonIgnore
+    public PolicyTable getPolicyTable() {
+        applyPendingIndexations();
+        return policyTable;
+    }
+
+    /** Number of policies; unlike {@link #getPolicies()} this does not apply deferred indexations. */
+    @JsonIgnore
+    public int getPolicyCount() { return policyTable.size(); }
+
+    public void setPolicies(List<Policy> policies) {
+        PolicyTable table = new PolicyTable(Math.max(4, policies.size()));
+        for (int i = 0; i < policies.size(); i++) {
+            table.add(policies.get(i));
+        }
+        this.policyTable = table;
+        pendingIndexations.clear();
+        policyIndex.clear();
+        for (int i = 0; i < table.size(); i++) {
+            policyIndex.add(table, i);
+        }
+    }
+
+    /** Copies {@code policy} into the table and returns the dossier's view of it. */
+    public Policy addPolicy(Policy policy) {
+        // Pending factors belong to the existing policies only
+        applyPendingIndexations();
+        int row = policyTable.add(policy);
+        policyIndex.add(policyTable, row);
+        return policyTable.row(row);
+    }
+
+    /**
+     * Appends a new policy without pension or projections and returns the dossier's view of it.
+     * {@code employmentStartDay} is the already parsed start date (see {@code IsoDates}).
+     */
+    public Policy addPolicy(String policyId, String schemeId, String employmentStartDate, int employmentStartDay,
+                            double salary, double partTimeFactor) {
+        applyPendingIndexations();
+        int row = policyTable.add(policyId, schemeId, employmentStartDate, employmentStartDay, salary, partTimeFactor);
+        policyIndex.add(policyTable, row);
+        return policyTable.row(row);
+    }
+
+    private void applyPendingIndexations() {
+        if (!pendingIndexations.isEmpty()) {
+            pendingIndexations.applyTo(policyTable, policyIndex);
+        }
+    }
+
+    /** Whether a policy with this scheme_id and employment_start_date already exists. */
+    public boolean hasPolicy(String schemeId, String employmentStartDate) {
+        return policyIndex.contains(schemeId, employmentStartDate);
+    }
+
+    /**
+     * Ascending positions in {@link #getPolicies()} of the policies matching an indexation filter;
+     * {@code null} leaves that criterion out, but at least one must be set. {@code effectiveBeforeDay}
+     * is the parsed cut-off, or {@code IsoDates.INVALID}.
+     */
+    public int[] policyPositions(String schemeId, String effectiveBefore, int effectiveBeforeDay) {
+        return policyIndex.matching(schemeId, effectiveBefore, effectiveBeforeDay, policyTable);
+    }
+
+    /** Number of policies {@link #policyPositions} would return. */
+    public int countPolicies(String schemeId, String effectiveBefore, int effectiveBeforeDay) {
+        return policyIndex.count(schemeId, effectiveBefore, effectiveBeforeDay, policyTable);
+    }
+
+    /**
+     * Records a salary indexation without touching the policies; it is applied the next time
+     * {@link #getPolicies()} is called. {@code factor} must be non-negative (no clamping happens
+     * here), and {@code null} filters match every policy.
+     */
+    public void deferIndexation(String schemeId, String effectiveBefore, int effectiveBeforeDay, double factor) {
+        pendingIndexations.add(schemeId, effectiveBefore, effectiveBeforeDay, factor);
+    }
+
+    /**
+     * Detached copy of the dossier as it is right now, for patch values that must not follow later
+     * mutations. Persons are never mutated after creation and are shared.
+     */
+    public Dossier snapshot() {
+        Dossier copy = new Dossier();
+        copy.dossierId = dossierId;
+        copy.status = status;
+        copy.retirementDate = retirementDate;
+        copy.persons = new ArrayList<>(persons);
+        List<Policy> current = getPolicies();
+        for (int i = 0; i < current.size(); i++) {
+            copy.addPolicy(current.get(i));
+        }
+        copy.policySequence = policySequence;
+        return copy;
+    }
 
     public int nextPolicySequence() { return ++policySequence; }
     public int getPolicySequence() { return policySequence; }
     public void setPolicySequence(int policySequence) { this.policySequence = policySequence; }
+
+    private final class PolicyView extends AbstractList<Policy> implements RandomAccess {
+        @Override
+        public Policy get(int index) {
+            if (index >= policyTable.size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return policyTable.row(index);
+        }
+
+        @Override
+        public int size() {
+            return policyTable.size();
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package com.pension.engine.model.state;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Salary indexations recorded but not yet applied, one composed factor per distinct filter
+ * (scheme_id, effective_before). Applying a bucket touches only the policies the index says
+ * match it, so a run of repeated indexations costs one pass per distinct filter.
+ */
+final class PendingIndexations {
+
+    private final Map<Filter, double[]> factors = new LinkedHashMap<>();
+
+    boolean isEmpty() {
+        return factors.isEmpty();
+    }
+
+    void add(String schemeId, String effectiveBefore, int effectiveBeforeDay, double factor) {
+        factors.computeIfAbsent(new Filter(schemeId, effectiveBefore, effectiveBeforeDay), k -> new double[] {1.0})[0] *= factor;
+    }
+
+    void applyTo(PolicyTable table, PolicyIndex index) {
+        double[] salaries = table.salaries();
+        for (Map.Entry<Filter, double[]> entry : factors.entrySet()) {
+            Filter filter = entry.getKey();
+            double factor = entry.getValue()[0];
+            if (filter.schemeId() == null && filter.effectiveBefore() == null) {
+                for (int i = 0; i < table.size(); i++) {
+                    salaries[i] *= factor;
+                }
+            } else {
+                for (int position : index.matching(filter.schemeId(), filter.effectiveBefore(), filter.effectiveBeforeDay(), table)) {
+                    salaries[position] *= factor;
+                }
+            }
+        }
+        factors.clear();
+    }
+
+    void clear() {
+        factors.clear();
+    }
+
+    private record Filter(String schemeId, String effectiveBefore, int effectiveBeforeDay) {}
+}
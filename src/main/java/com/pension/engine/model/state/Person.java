@@ -1,6 +1,8 @@
 package com.pension.engine.model.state;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.pension.engine.util.IsoDates;
 
 public class Person {
 
@@ -16,13 +18,22 @@ public class Person {
     @JsonProperty("birth_date")
     private String birthDate;
 
+    /** {@link #birthDate} as an epoch day, or {@link IsoDates#INVALID}. */
+    @JsonIgnore
+    private int birthDay = IsoDates.INVALID;
+
     public Person() {}
 
     public Person(String personId, String role, String name, String birthDate) {
+        this(personId, role, name, birthDate, IsoDates.parseEpochDay(birthDate));
+    }
+
+    public Person(String personId, String role, String name, String birthDate, int birthDay) {
         this.personId = personId;
         this.role = role;
         this.name = name;
         this.birthDate = birthDate;
+        this.birthDay = birthDay;
     }
 
     public String getPersonId() { return personId; }
@@ -35,5 +46,11 @@ public class Person {
     public void setName(String name) { this.name = name; }
 
     public String getBirthDate() { return birthDate; }
-    public void setBirthDate(String birthDate) { this.birthDate = birthDate; }
+    public void setBirthDate(String birthDate) {
+        this.birthDate = birthDate;
+        this.birthDay = IsoDates.parseEpochDay(birthDate);
+    }
+
+    @JsonIgnore
+    public int getBirthDay() { return birthDay; }
 }
@@ -2,53 +2,67 @@ package com.pension.engine.model.state;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 import java.util.List;
 
+/**
+ * One row of a {@link PolicyTable}. Policies inside a dossier are views onto the dossier's table;
+ * a policy created with {@code new Policy()} owns a private one-row table until it is copied in
+ * with {@link Dossier#addPolicy}. scheme_id and employment_start_date are indexed by the dossier,
+ * so only this package may set them, and only on a policy that is not part of a dossier yet.
+ */
 @JsonInclude(JsonInclude.Include.ALWAYS)
+@JsonPropertyOrder({"policy_id", "scheme_id", "employment_start_date", "salary", "part_time_factor",
+        "attainable_pension", "projections"})
 public class Policy {
 
+    private final PolicyTable table;
+    private final int row;
+
+    public Policy() {
+        this.table = new PolicyTable(1);
+        this.row = table.add(null, null, null, 0, 0);
+    }
+
+    Policy(PolicyTable table, int row) {
+        this.table = table;
+        this.row = row;
+    }
+
+    /** Detached copy for patch values; the projection list is replaced, never mutated, so it is shared. */
+    public Policy snapshot() {
+        PolicyTable copy = new PolicyTable(1);
+        return copy.row(copy.add(this));
+    }
+
     @JsonProperty("policy_id")
-    private String policyId;
+    public String getPolicyId() { return table.policyId(row); }
+    public void setPolicyId(String policyId) { table.setPolicyId(row, policyId); }
 
     @JsonProperty("scheme_id")
-    private String schemeId;
+    public String getSchemeId() { return table.schemeId(row); }
+    void setSchemeId(String schemeId) { table.setIdentity(row, schemeId, getEmploymentStartDate()); }
 
     @JsonProperty("employment_start_date")
-    private String employmentStartDate;
+    public String getEmploymentStartDate() { return table.employmentStartDate(row); }
+    void setEmploymentStartDate(String employmentStartDate) {
+        table.setIdentity(row, getSchemeId(), employmentStartDate);
+    }
 
     @JsonProperty("salary")
-    private double salary;
+    public double getSalary() { return table.salary(row); }
+    public void setSalary(double salary) { table.setSalary(row, salary); }
 
     @JsonProperty("part_time_factor")
-    private double partTimeFactor;
+    public double getPartTimeFactor() { return table.partTimeFactor(row); }
+    public void setPartTimeFactor(double partTimeFactor) { table.setPartTimeFactor(row, partTimeFactor); }
 
     @JsonProperty("attainable_pension")
-    private Double attainablePension;
+    public Double getAttainablePension() { return table.attainablePension(row); }
+    public void setAttainablePension(Double attainablePension) { table.setAttainablePension(row, attainablePension); }
 
     @JsonProperty("projections")
-    private List<Projection> projections;
-
-    public Policy() {}
-
-    public String getPolicyId() { return policyId; }
-    public void setPolicyId(String policyId) { this.policyId = policyId; }
-
-    public String getSchemeId() { return schemeId; }
-    public void setSchemeId(String schemeId) { this.schemeId = schemeId; }
-
-    public String getEmploymentStartDate() { return employmentStartDate; }
-    public void setEmploymentStartDate(String employmentStartDate) { this.employmentStartDate = employmentStartDate; }
-
-    public double getSalary() { return salary; }
-    public void setSalary(double salary) { this.salary = salary; }
-
-    public double getPartTimeFactor() { return partTimeFactor; }
-    public void setPartTimeFactor(double partTimeFactor) { this.partTimeFactor = partTimeFactor; }
-
-    public Double getAttainablePension() { return attainablePension; }
-    public void setAttainablePension(Double attainablePension) { this.attainablePension = attainablePension; }
-
-    public List<Projection> getProjections() { return projections; }
-    public void setProjections(List<Projection> projections) { this.projections = projections; }
+    public List<Projection> getProjections() { return table.projections(row); }
+    public void setProjections(List<Projection> projections) { table.setProjections(row, projections); }
 }
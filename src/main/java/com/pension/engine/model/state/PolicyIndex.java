@@ -0,0 +1,159 @@
+package com.pension.engine.model.state;
+
+import com.pension.engine.util.IsoDates;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes over a {@link PolicyTable}, keyed by row. Rows are only ever appended and
+ * their scheme_id / employment_start_date never change, so {@link #add} is the only update
+ * needed. Schemes are bucketed by the table's scheme ordinal and start dates by epoch day.
+ */
+final class PolicyIndex {
+
+    private Positions[] byScheme = new Positions[4];
+    private final TreeMap<Integer, Positions> byStartDay = new TreeMap<>();
+    private final Set<Key> keys = new HashSet<>();
+
+    void add(PolicyTable table, int position) {
+        int scheme = table.schemeOrdinal(position);
+        if (scheme >= 0) {
+            if (scheme >= byScheme.length) {
+                byScheme = Arrays.copyOf(byScheme, Math.max(scheme + 1, byScheme.length * 2));
+            }
+            if (byScheme[scheme] == null) {
+                byScheme[scheme] = new Positions();
+            }
+            byScheme[scheme].add(position);
+        }
+        int startDay = table.startDay(position);
+        if (startDay != IsoDates.INVALID) {
+            byStartDay.computeIfAbsent(startDay, k -> new Positions()).add(position);
+        }
+        keys.add(new Key(table.schemeId(position), table.employmentStartDate(position)));
+    }
+
+    void clear() {
+        Arrays.fill(byScheme, null);
+        byStartDay.clear();
+        keys.clear();
+    }
+
+    boolean contains(String schemeId, String employmentStartDate) {
+        return keys.contains(new Key(schemeId, employmentStartDate));
+    }
+
+    /**
+     * Positions, ascending, of the policies with the given scheme (if non-null) and a start date
+     * strictly before {@code effectiveBefore} (if non-null). At least one of the two filters must
+     * be given. Dates compare as epoch days; if the cut-off or any start date is not a valid ISO
+     * date, they compare as strings instead, as they always did.
+     */
+    int[] matching(String schemeId, String effectiveBefore, int effectiveBeforeDay, PolicyTable table) {
+        boolean byDay = effectiveBefore == null
+                || (effectiveBeforeDay != IsoDates.INVALID && table.hasValidStartDays());
+        if (schemeId != null) {
+            Positions scheme = schemeBucket(schemeId, table);
+            if (scheme == null) {
+                return Positions.NONE;
+            }
+            if (effectiveBefore == null) {
+                return scheme.toArray();
+            }
+            // Narrow the scheme bucket by date; buckets are in insertion (= position) order
+            int[] startDays = table.startDays();
+            int[] out = new int[scheme.size];
+            int n = 0;
+            for (int i = 0; i < scheme.size; i++) {
+                int position = scheme.values[i];
+                boolean before = byDay
+                        ? startDays[position] < effectiveBeforeDay
+                        : table.employmentStartDate(position).compareTo(effectiveBefore) < 0;
+                if (before) {
+                    out[n++] = position;
+                }
+            }
+            return n == out.length ? out : Arrays.copyOf(out, n);
+        }
+
+        if (!byDay) {
+            return scanByString(effectiveBefore, table);
+        }
+        Map<Integer, Positions> before = byStartDay.headMap(effectiveBeforeDay, false);
+        if (before.isEmpty()) {
+            return Positions.NONE;
+        }
+        int[] out = new int[count(before)];
+        int n = 0;
+        for (Positions p : before.values()) {
+            System.arraycopy(p.values, 0, out, n, p.size);
+            n += p.size;
+        }
+        if (before.size() > 1) {
+            // Date order is not position order; callers patch in list order
+            Arrays.sort(out);
+        }
+        return out;
+    }
+
+    /** Same as {@code matching(...).length}, without building the position array for single filters. */
+    int count(String schemeId, String effectiveBefore, int effectiveBeforeDay, PolicyTable table) {
+        if (effectiveBefore == null) {
+            Positions scheme = schemeBucket(schemeId, table);
+            return scheme == null ? 0 : scheme.size;
+        }
+        if (schemeId == null && effectiveBeforeDay != IsoDates.INVALID && table.hasValidStartDays()) {
+            return count(byStartDay.headMap(effectiveBeforeDay, false));
+        }
+        return matching(schemeId, effectiveBefore, effectiveBeforeDay, table).length;
+    }
+
+    private Positions schemeBucket(String schemeId, PolicyTable table) {
+        int ordinal = table.schemeOrdinalOf(schemeId);
+        return ordinal < 0 || ordinal >= byScheme.length ? null : byScheme[ordinal];
+    }
+
+    private static int count(Map<Integer, Positions> buckets) {
+        int total = 0;
+        for (Positions p : buckets.values()) {
+            total += p.size;
+        }
+        return total;
+    }
+
+    private static int[] scanByString(String effectiveBefore, PolicyTable table) {
+        int[] out = new int[table.size()];
+        int n = 0;
+        for (int i = 0; i < table.size(); i++) {
+            if (table.employmentStartDate(i).compareTo(effectiveBefore) < 0) {
+                out[n++] = i;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private record Key(String schemeId, String employmentStartDate) {}
+
+    /** Append-only list of positions; always sorted since positions are added in order. */
+    private static final class Positions {
+        static final int[] NONE = new int[0];
+
+        int[] values = new int[4];
+        int size;
+
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
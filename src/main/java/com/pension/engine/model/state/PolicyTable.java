@@ -0,0 +1,228 @@
+package com.pension.engine.model.state;
+
+import com.pension.engine.util.IsoDates;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column store behind a dossier's policies: one primitive array per numeric field, so the
+ * retirement and projection loops walk contiguous {@code double[]}/{@code int[]} data instead of
+ * chasing {@link Policy} objects and unboxing {@code Double}s. {@link Policy} instances are thin
+ * row views over this table, which keeps the JSON shape and the public model API unchanged.
+ *
+ * <p>The raw column accessors ({@link #salaries()}, {@link #startDays()}, ...) return the backing
+ * arrays; only indexes below {@link #size()} are meaningful, and the arrays are replaced when the
+ * table grows, so callers must not hold on to them across {@link #add} calls.
+ */
+public final class PolicyTable {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int size;
+
+    private String[] policyIds;
+    private String[] schemeIds;
+    private String[] startDates;
+    private int[] startDays;
+    private int[] schemeOrdinals;
+    private double[] salaries;
+    private double[] partTimeFactors;
+    private double[] pensions;
+    /** Bit {@code i} set when row {@code i} has an attainable pension (the JSON value is non-null). */
+    private long[] pensionPresent;
+    private List<Projection>[] projections;
+    private Policy[] rows;
+
+    private final List<String> schemes = new ArrayList<>(4);
+    private Map<String, Integer> schemeOrdinalsById;
+    private int invalidStartDays;
+
+    public PolicyTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    PolicyTable(int capacity) {
+        policyIds = new String[capacity];
+        schemeIds = new String[capacity];
+        startDates = new String[capacity];
+        startDays = new int[capacity];
+        schemeOrdinals = new int[capacity];
+        salaries = new double[capacity];
+        partTimeFactors = new double[capacity];
+        pensions = new double[capacity];
+        pensionPresent = new long[(capacity + 63) >>> 6];
+        projections = new List[capacity];
+        rows = new Policy[capacity];
+    }
+
+    public int size() { return size; }
+
+    /** Appends a row with no pension and no projections and returns its index. */
+    public int add(String policyId, String schemeId, String employmentStartDate, double salary, double partTimeFactor) {
+        return add(policyId, schemeId, employmentStartDate, IsoDates.parseEpochDay(employmentStartDate),
+                salary, partTimeFactor);
+    }
+
+    /** As {@link #add(String, String, String, double, double)} with the start date already parsed. */
+    public int add(String policyId, String schemeId, String employmentStartDate, int employmentStartDay,
+                   double salary, double partTimeFactor) {
+        if (size == salaries.length) {
+            grow();
+        }
+        int row = size++;
+        policyIds[row] = policyId;
+        setIdentity(row, schemeId, employmentStartDate, employmentStartDay);
+        salaries[row] = salary;
+        partTimeFactors[row] = partTimeFactor;
+        rows[row] = new Policy(this, row);
+        return row;
+    }
+
+    /** Appends a copy of {@code policy}, including its pension and projections. */
+    public int add(Policy policy) {
+        int row = add(policy.getPolicyId(), policy.getSchemeId(), policy.getEmploymentStartDate(),
+                policy.getSalary(), policy.getPartTimeFactor());
+        setAttainablePension(row, policy.getAttainablePension());
+        projections[row] = policy.getProjections();
+        return row;
+    }
+
+    /** The view object for a row; the same instance is returned on every call. */
+    public Policy row(int row) { return rows[row]; }
+
+    public String policyId(int row) { return policyIds[row]; }
+    public String schemeId(int row) { return schemeIds[row]; }
+    public String employmentStartDate(int row) { return startDates[row]; }
+    public int startDay(int row) { return startDays[row]; }
+    public int schemeOrdinal(int row) { return schemeOrdinals[row]; }
+    public double salary(int row) { return salaries[row]; }
+    public double partTimeFactor(int row) { return partTimeFactors[row]; }
+    public List<Projection> projections(int row) { return projections[row]; }
+
+    public void setSalary(int row, double salary) { salaries[row] = salary; }
+    public void setPartTimeFactor(int row, double partTimeFactor) { partTimeFactors[row] = partTimeFactor; }
+    public void setProjections(int row, List<Projection> value) { projections[row] = value; }
+
+    public boolean hasAttainablePension(int row) {
+        return (pensionPresent[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /** Boxed for the JSON model; hot loops use {@link #pensions()} with {@link #hasAttainablePension}. */
+    public Double attainablePension(int row) {
+        return hasAttainablePension(row) ? pensions[row] : null;
+    }
+
+    public void setAttainablePension(int row, double pension) {
+        pensions[row] = pension;
+        pensionPresent[row >>> 6] |= 1L << row;
+    }
+
+    /**
+     * Marks rows {@code [from, to)} as having the pension already written to {@link #pensions()}.
+     * Touches only the bitmap words of that range, which {@link com.pension.engine.kernel.ParallelKernels}
+     * never shares between tasks.
+     */
+    public void markAttainablePensions(int from, int to) {
+        for (int row = from; row < to; row++) {
+            pensionPresent[row >>> 6] |= 1L << row;
+        }
+    }
+
+    public void setAttainablePension(int row, Double pension) {
+        if (pension == null) {
+            pensions[row] = 0;
+            pensionPresent[row >>> 6] &= ~(1L << row);
+        } else {
+            setAttainablePension(row, pension.doubleValue());
+        }
+    }
+
+    void setPolicyId(int row, String policyId) { policyIds[row] = policyId; }
+
+    /** Scheme and start date go together because both feed derived columns. */
+    void setIdentity(int row, String schemeId, String employmentStartDate) {
+        setIdentity(row, schemeId, employmentStartDate, IsoDates.parseEpochDay(employmentStartDate));
+    }
+
+    private void setIdentity(int row, String schemeId, String employmentStartDate, int employmentStartDay) {
+        schemeIds[row] = schemeId;
+        schemeOrdinals[row] = schemeId == null ? -1 : internScheme(schemeId);
+        if (row < size && startDays[row] == IsoDates.INVALID) {
+            invalidStartDays--;
+        }
+        startDates[row] = employmentStartDate;
+        startDays[row] = employmentStartDay;
+        if (startDays[row] == IsoDates.INVALID && employmentStartDate != null) {
+            invalidStartDays++;
+        }
+    }
+
+    /** Whether every non-null employment_start_date is a valid ISO date. */
+    public boolean hasValidStartDays() { return invalidStartDays == 0; }
+
+    /**
+     * Fails the way parsing the start dates on the spot would, for loops that read
+     * {@link #startDays()} and must not compute with {@link IsoDates#INVALID}.
+     */
+    public void requireValidStartDays() {
+        if (invalidStartDays == 0) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            if (startDays[i] == IsoDates.INVALID && startDates[i] != null) {
+                LocalDate.parse(startDates[i]);
+            }
+        }
+    }
+
+    // ── Raw columns for hot loops ──
+
+    public double[] salaries() { return salaries; }
+    public double[] partTimeFactors() { return partTimeFactors; }
+    public int[] startDays() { return startDays; }
+    public int[] schemeOrdinals() { return schemeOrdinals; }
+    public double[] pensions() { return pensions; }
+
+    /** Distinct scheme ids in first-seen order; a row's {@link #schemeOrdinal} indexes this list. */
+    public List<String> schemes() { return schemes; }
+
+    /** Ordinal of {@code schemeId} in this table, or -1 if no row has that scheme. */
+    public int schemeOrdinalOf(String schemeId) {
+        Integer ordinal = schemeOrdinalsById == null ? null : schemeOrdinalsById.get(schemeId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    private int internScheme(String schemeId) {
+        if (schemeOrdinalsById == null) {
+            schemeOrdinalsById = new HashMap<>(4);
+        }
+        Integer ordinal = schemeOrdinalsById.get(schemeId);
+        if (ordinal == null) {
+            ordinal = schemes.size();
+            schemes.add(schemeId);
+            schemeOrdinalsById.put(schemeId, ordinal);
+        }
+        return ordinal;
+    }
+
+    private void grow() {
+        int capacity = Math.max(INITIAL_CAPACITY, salaries.length * 2);
+        policyIds = Arrays.copyOf(policyIds, capacity);
+        schemeIds = Arrays.copyOf(schemeIds, capacity);
+        startDates = Arrays.copyOf(startDates, capacity);
+        startDays = Arrays.copyOf(startDays, capacity);
+        schemeOrdinals = Arrays.copyOf(schemeOrdinals, capacity);
+        salaries = Arrays.copyOf(salaries, capacity);
+        partTimeFactors = Arrays.copyOf(partTimeFactors, capacity);
+        pensions = Arrays.copyOf(pensions, capacity);
+        pensionPresent = Arrays.copyOf(pensionPresent, (capacity + 63) >>> 6);
+        projections = Arrays.copyOf(projections, capacity);
+        rows = Arrays.copyOf(rows, capacity);
+    }
+}
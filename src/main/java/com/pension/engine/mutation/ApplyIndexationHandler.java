@@ -1,24 +1,31 @@
 package com.pension.engine.mutation;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.pension.engine.kernel.ParallelKernels;
+import com.pension.engine.model.request.ApplyIndexationProperties;
 import com.pension.engine.model.request.Mutation;
+import com.pension.engine.model.request.MutationProperties;
 import com.pension.engine.model.response.CalculationMessage;
 import com.pension.engine.model.state.Dossier;
-import com.pension.engine.model.state.Policy;
+import com.pension.engine.model.state.PolicyTable;
 import com.pension.engine.model.state.Situation;
-import com.pension.engine.scheme.SchemeRegistryClient;
+import com.pension.engine.patch.PatchBuilder;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ApplyIndexationHandler implements MutationHandler {
 
     @Override
-    public MutationResult execute(Situation situation, Mutation mutation, SchemeRegistryClient schemeClient, ObjectMapper mapper) {
-        JsonNode props = mutation.getMutationProperties();
+    public MutationProperties readProperties(JsonParser parser) throws IOException {
+        return ApplyIndexationProperties.read(parser);
+    }
+
+    @Override
+    public MutationResult execute(Situation situation, Mutation mutation, MutationContext context) {
+        ApplyIndexationProperties props = (ApplyIndexationProperties) mutation.getProperties();
         Dossier dossier = situation.getDossier();
 
         // Validation
@@ -27,72 +34,108 @@ public class ApplyIndexationHandler implements MutationHandler {
                     "CRITICAL", "DOSSIER_NOT_FOUND", "No dossier exists in the situation"));
         }
 
-        List<Policy> policies = dossier.getPolicies();
-        if (policies.isEmpty()) {
+        if (dossier.getPolicyCount() == 0) {
             return MutationResult.critical(new CalculationMessage(
                     "CRITICAL", "NO_POLICIES", "Dossier has no policies"));
         }
 
-        double percentage = props.path("percentage").asDouble();
-        JsonNode schemeIdNode = props.get("scheme_id");
-        JsonNode effectiveBeforeNode = props.get("effective_before");
-        String filterSchemeId = schemeIdNode != null && !schemeIdNode.isNull() ? schemeIdNode.asText() : null;
-        String filterEffectiveBefore = effectiveBeforeNode != null && !effectiveBeforeNode.isNull() ? effectiveBeforeNode.asText() : null;
+        double percentage = props.percentage();
+        String filterSchemeId = props.schemeId();
+        String filterEffectiveBefore = props.effectiveBefore();
+        int filterEffectiveBeforeDay = props.effectiveBeforeDay();
         boolean hasFilters = filterSchemeId != null || filterEffectiveBefore != null;
 
         double factor = 1.0 + percentage;
+
+        // Deferred path: nothing can clamp with a non-negative factor, and no patch needs the
+        // per-policy salaries, so just record the factor against the dossier
+        if (context.isLazyIndexation() && !context.getPatchMode().forward() && factor >= 0) {
+            if (hasFilters && dossier.countPolicies(filterSchemeId, filterEffectiveBefore, filterEffectiveBeforeDay) == 0) {
+                return MutationResult.warning(noMatchingPolicies());
+            }
+            dossier.deferIndexation(filterSchemeId, filterEffectiveBefore, filterEffectiveBeforeDay, factor);
+            return MutationResult.success();
+        }
+
+        PolicyTable table = dossier.getPolicyTable();
+        double[] salaries = table.salaries();
         List<CalculationMessage> warnings = null;
-        int matchCount = 0;
 
-        ArrayNode fwd = mapper.createArrayNode();
-        ArrayNode bwd = mapper.createArrayNode();
+        // Filters are answered by the dossier's indexes, so only matching policies are visited
+        int[] positions = hasFilters ? dossier.policyPositions(filterSchemeId, filterEffectiveBefore, filterEffectiveBeforeDay) : null;
+        int matchCount = (positions != null) ? positions.length : table.size();
 
-        for (int i = 0; i < policies.size(); i++) {
-            Policy policy = policies.get(i);
+        PatchBuilder patches = new PatchBuilder(context.getPatchMode(), matchCount);
 
-            // Apply filters
-            if (filterSchemeId != null && !policy.getSchemeId().equals(filterSchemeId)) {
-                continue;
-            }
-            if (filterEffectiveBefore != null && policy.getEmploymentStartDate().compareTo(filterEffectiveBefore) >= 0) {
-                continue;
+        // Without patches the update is a plain map over the matches, which can be split; the
+        // clamp warnings are all alike, so only their number matters
+        ParallelKernels kernels = context.getKernels();
+        if (!patches.enabled() && kernels.shouldSplit(ParallelKernels.Site.INDEXATION, matchCount, 1)) {
+            int clamped = indexInParallel(kernels, salaries, positions, matchCount, factor);
+            for (int c = 0; c < clamped; c++) {
+                if (warnings == null) warnings = new ArrayList<>(1);
+                warnings.add(negativeSalaryClamped());
             }
+            return (warnings != null) ? MutationResult.warnings(warnings) : MutationResult.success();
+        }
 
-            matchCount++;
-            double oldSalary = policy.getSalary();
+        for (int k = 0; k < matchCount; k++) {
+            int i = (positions != null) ? positions[k] : k;
+
+            double oldSalary = salaries[i];
             double newSalary = oldSalary * factor;
 
             if (newSalary < 0) {
                 newSalary = 0;
                 if (warnings == null) warnings = new ArrayList<>(1);
-                warnings.add(new CalculationMessage(
-                        "WARNING", "NEGATIVE_SALARY_CLAMPED",
-                        "Salary would be negative after indexation, clamped to 0"));
+                warnings.add(negativeSalaryClamped());
             }
 
-            policy.setSalary(newSalary);
+            salaries[i] = newSalary;
 
             // Patch: replace salary
-            String path = "/dossier/policies/" + i + "/salary";
-            ObjectNode fwdOp = fwd.addObject();
-            fwdOp.put("op", "replace");
-            fwdOp.put("path", path);
-            fwdOp.put("value", newSalary);
-
-            ObjectNode bwdOp = bwd.addObject();
-            bwdOp.put("op", "replace");
-            bwdOp.put("path", path);
-            bwdOp.put("value", oldSalary);
+            if (patches.enabled()) {
+                patches.replace("/dossier/policies/" + i + "/salary", newSalary, oldSalary);
+            }
         }
 
         if (hasFilters && matchCount == 0) {
             if (warnings == null) warnings = new ArrayList<>(1);
-            warnings.add(new CalculationMessage(
-                    "WARNING", "NO_MATCHING_POLICIES",
-                    "No policies match the specified filter criteria"));
+            warnings.add(noMatchingPolicies());
         }
 
         MutationResult result = (warnings != null) ? MutationResult.warnings(warnings) : MutationResult.success();
-        return result.withPatches(fwd, bwd);
+        return patches.applyTo(result);
+    }
+
+    private static int indexInParallel(ParallelKernels kernels, double[] salaries, int[] positions,
+                                       int matchCount, double factor) {
+        LongAdder clamped = new LongAdder();
+        kernels.forRange(ParallelKernels.Site.INDEXATION, matchCount, 1, (from, to) -> {
+            int local = 0;
+            for (int k = from; k < to; k++) {
+                int i = (positions != null) ? positions[k] : k;
+                double newSalary = salaries[i] * factor;
+                if (newSalary < 0) {
+                    newSalary = 0;
+                    local++;
+                }
+                salaries[i] = newSalary;
+            }
+            clamped.add(local);
+        });
+        return clamped.intValue();
+    }
+
+    private static CalculationMessage negativeSalaryClamped() {
+        return new CalculationMessage(
+                "WARNING", "NEGATIVE_SALARY_CLAMPED",
+                "Salary would be negative after indexation, clamped to 0");
+    }
+
+    private static CalculationMessage noMatchingPolicies() {
+        return new CalculationMessage(
+                "WARNING", "NO_MATCHING_POLICIES",
+                "No policies match the specified filter criteria");
     }
 }
@@ -1,18 +1,20 @@
 package com.pension.engine.mutation;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.pension.engine.kernel.ParallelKernels;
+import com.pension.engine.kernel.SalaryKernels;
+import com.pension.engine.model.request.CalculateRetirementBenefitProperties;
 import com.pension.engine.model.request.Mutation;
+import com.pension.engine.model.request.MutationProperties;
 import com.pension.engine.model.response.CalculationMessage;
 import com.pension.engine.model.state.Dossier;
 import com.pension.engine.model.state.Person;
-import com.pension.engine.model.state.Policy;
+import com.pension.engine.model.state.PolicyTable;
 import com.pension.engine.model.state.Situation;
-import com.pension.engine.scheme.SchemeRegistryClient;
+import com.pension.engine.patch.PatchBuilder;
+import com.pension.engine.util.IsoDates;
 
-import java.time.LocalDate;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -20,8 +22,18 @@ import java.util.Map;
 public class CalculateRetirementBenefitHandler implements MutationHandler {
 
     @Override
-    public MutationResult execute(Situation situation, Mutation mutation, SchemeRegistryClient schemeClient, ObjectMapper mapper) {
-        JsonNode props = mutation.getMutationProperties();
+    public MutationProperties readProperties(JsonParser parser) throws IOException {
+        return CalculateRetirementBenefitProperties.read(parser);
+    }
+
+    @Override
+    public boolean usesAccrualRates() {
+        return true;
+    }
+
+    @Override
+    public MutationResult execute(Situation situation, Mutation mutation, MutationContext context) {
+        CalculateRetirementBenefitProperties props = (CalculateRetirementBenefitProperties) mutation.getProperties();
         Dossier dossier = situation.getDossier();
 
         // Validation
@@ -30,44 +42,45 @@ public class CalculateRetirementBenefitHandler implements MutationHandler {
                     "CRITICAL", "DOSSIER_NOT_FOUND", "No dossier exists in the situation"));
         }
 
-        List<Policy> policies = dossier.getPolicies();
-        if (policies.isEmpty()) {
+        PolicyTable table = dossier.getPolicyTable();
+        int policyCount = table.size();
+        if (policyCount == 0) {
             return MutationResult.critical(new CalculationMessage(
                     "CRITICAL", "NO_POLICIES", "Dossier has no policies"));
         }
 
-        String retirementDateStr = props.path("retirement_date").asText();
-        long retirementEpochDay = LocalDate.parse(retirementDateStr).toEpochDay();
+        String retirementDateStr = props.retirementDate();
+        long retirementEpochDay = IsoDates.require(props.retirementDay(), retirementDateStr);
+
+        table.requireValidStartDays();
+        int[] startDays = table.startDays();
+        double[] salaries = table.salaries();
+        double[] partTimeFactors = table.partTimeFactors();
 
-        int policyCount = policies.size();
+        ParallelKernels kernels = context.getKernels();
         double[] years = new double[policyCount];
-        double[] effectiveSalaries = new double[policyCount];
         List<CalculationMessage> warnings = null;
         double totalYears = 0;
 
-        // Single pass: calculate years of service, effective salaries, and warnings
-        for (int i = 0; i < policyCount; i++) {
-            Policy policy = policies.get(i);
-            long empStartDay = LocalDate.parse(policy.getEmploymentStartDate()).toEpochDay();
-            long daysDiff = retirementEpochDay - empStartDay;
+        // Years of service per policy (element-wise, may be split across threads)
+        SalaryKernels math = SalaryKernels.active();
+        kernels.forRange(ParallelKernels.Site.RETIREMENT, policyCount, 1,
+                (from, to) -> math.yearsOfService(startDays, retirementEpochDay, years, from, to));
 
-            if (daysDiff < 0) {
-                years[i] = 0;
+        // Warnings and the total in list order, so the sum is the same however the map was split
+        for (int i = 0; i < policyCount; i++) {
+            if (retirementEpochDay < startDays[i]) {
                 if (warnings == null) warnings = new ArrayList<>(2);
                 warnings.add(new CalculationMessage(
                         "WARNING", "RETIREMENT_BEFORE_EMPLOYMENT",
-                        "Retirement date is before employment start date for policy " + policy.getPolicyId()));
-            } else {
-                years[i] = daysDiff / 365.25;
+                        "Retirement date is before employment start date for policy " + table.policyId(i)));
             }
-
-            effectiveSalaries[i] = policy.getSalary() * policy.getPartTimeFactor();
             totalYears += years[i];
         }
 
         // Eligibility check: age >= 65 OR total years >= 40
         Person participant = dossier.getPersons().get(0);
-        long birthEpochDay = LocalDate.parse(participant.getBirthDate()).toEpochDay();
+        long birthEpochDay = IsoDates.require(participant.getBirthDay(), participant.getBirthDate());
         long ageDays = retirementEpochDay - birthEpochDay;
         double age = ageDays / 365.25;
 
@@ -81,58 +94,57 @@ public class CalculateRetirementBenefitHandler implements MutationHandler {
             return MutationResult.critical(allMessages);
         }
 
-        // Fetch accrual rates from scheme registry if available
-        Map<String, Double> accrualRates = null;
-        if (schemeClient != null) {
-            accrualRates = schemeClient.getAccrualRates(policies);
+        // Registry accrual rates (fetched by the engine) if available, resolved per scheme ordinal
+        double[] schemeRates = null;
+        Map<String, Double> accrualRates = context.getAccrualRates();
+        if (accrualRates != null) {
+            List<String> schemes = table.schemes();
+            schemeRates = new double[schemes.size()];
+            for (int s = 0; s < schemeRates.length; s++) {
+                schemeRates[s] = accrualRates.getOrDefault(schemes.get(s), 0.02);
+            }
         }
 
-        // Calculate weighted average salary
-        double weightedSum = 0;
-        for (int i = 0; i < policyCount; i++) {
-            weightedSum += effectiveSalaries[i] * years[i];
-        }
+        // Calculate weighted average salary (effective salary = salary * part-time factor)
+        double weightedSum = math.weightedSum(salaries, partTimeFactors, years, policyCount);
         double weightedAvg = totalYears > 0 ? weightedSum / totalYears : 0;
 
         // Capture old values for backward patch
+        PatchBuilder patches = new PatchBuilder(context.getPatchMode(), policyCount + 2);
         String oldStatus = dossier.getStatus();
         String oldRetirementDate = dossier.getRetirementDate();
-        Double[] oldPensions = new Double[policyCount];
-        for (int i = 0; i < policyCount; i++) {
-            oldPensions[i] = policies.get(i).getAttainablePension();
-        }
-
-        // Calculate annual pension using accrual rate (per-scheme if available, else default 0.02)
-        double annualPension;
-        if (accrualRates != null) {
-            annualPension = 0;
+        Double[] oldPensions = null;
+        if (patches.enabled()) {
+            oldPensions = new Double[policyCount];
             for (int i = 0; i < policyCount; i++) {
-                double accrualRate = accrualRates.getOrDefault(policies.get(i).getSchemeId(), 0.02);
-                annualPension += weightedAvg * years[i] * accrualRate;
+                oldPensions[i] = table.attainablePension(i);
             }
+        }
 
-            // Distribute proportionally: each policy gets its share
+        // Calculate annual pension using accrual rate (per-scheme if available, else default 0.02)
+        double[] pensions = table.pensions();
+        if (!(totalYears > 0)) {
             for (int i = 0; i < policyCount; i++) {
-                if (totalYears > 0) {
-                    double accrualRate = accrualRates.getOrDefault(policies.get(i).getSchemeId(), 0.02);
-                    double policyPension = weightedAvg * years[i] * accrualRate;
-                    policies.get(i).setAttainablePension(policyPension);
-                } else {
-                    policies.get(i).setAttainablePension(0.0);
-                }
+                table.setAttainablePension(i, 0.0);
             }
+        } else if (schemeRates != null) {
+            double[] rates = schemeRates;
+            int[] schemeOrdinals = table.schemeOrdinals();
+
+            // Each policy gets its own accrual
+            kernels.forRange(ParallelKernels.Site.RETIREMENT, policyCount, 1, (from, to) -> {
+                math.accruedPensions(weightedAvg, years, rates, schemeOrdinals, pensions, from, to);
+                table.markAttainablePensions(from, to);
+            });
         } else {
-            annualPension = weightedAvg * totalYears * 0.02;
+            double annualPension = weightedAvg * totalYears * 0.02;
+            double total = totalYears;
 
             // Distribute proportionally
-            for (int i = 0; i < policyCount; i++) {
-                if (totalYears > 0) {
-                    double policyPension = annualPension * (years[i] / totalYears);
-                    policies.get(i).setAttainablePension(policyPension);
-                } else {
-                    policies.get(i).setAttainablePension(0.0);
-                }
-            }
+            kernels.forRange(ParallelKernels.Site.RETIREMENT, policyCount, 1, (from, to) -> {
+                math.proportionalPensions(annualPension, years, total, pensions, from, to);
+                table.markAttainablePensions(from, to);
+            });
         }
 
         // Update dossier status
@@ -140,55 +152,18 @@ public class CalculateRetirementBenefitHandler implements MutationHandler {
         dossier.setRetirementDate(retirementDateStr);
 
         // Build patches
-        ArrayNode fwd = mapper.createArrayNode();
-        ArrayNode bwd = mapper.createArrayNode();
-
-        // Status change
-        ObjectNode fwdStatus = fwd.addObject();
-        fwdStatus.put("op", "replace");
-        fwdStatus.put("path", "/dossier/status");
-        fwdStatus.put("value", "RETIRED");
-
-        ObjectNode bwdStatus = bwd.addObject();
-        bwdStatus.put("op", "replace");
-        bwdStatus.put("path", "/dossier/status");
-        bwdStatus.put("value", oldStatus);
-
-        // Retirement date change
-        ObjectNode fwdRetDate = fwd.addObject();
-        fwdRetDate.put("op", "replace");
-        fwdRetDate.put("path", "/dossier/retirement_date");
-        fwdRetDate.put("value", retirementDateStr);
-
-        ObjectNode bwdRetDate = bwd.addObject();
-        bwdRetDate.put("op", "replace");
-        bwdRetDate.put("path", "/dossier/retirement_date");
-        if (oldRetirementDate != null) {
-            bwdRetDate.put("value", oldRetirementDate);
-        } else {
-            bwdRetDate.putNull("value");
-        }
+        if (patches.enabled()) {
+            patches.replace("/dossier/status", "RETIRED", oldStatus);
+            patches.replace("/dossier/retirement_date", retirementDateStr, oldRetirementDate);
 
-        // Attainable pension per policy
-        for (int i = 0; i < policyCount; i++) {
-            String path = "/dossier/policies/" + i + "/attainable_pension";
-
-            ObjectNode fwdPension = fwd.addObject();
-            fwdPension.put("op", "replace");
-            fwdPension.put("path", path);
-            fwdPension.put("value", policies.get(i).getAttainablePension());
-
-            ObjectNode bwdPension = bwd.addObject();
-            bwdPension.put("op", "replace");
-            bwdPension.put("path", path);
-            if (oldPensions[i] != null) {
-                bwdPension.put("value", oldPensions[i]);
-            } else {
-                bwdPension.putNull("value");
+            // Attainable pension per policy
+            for (int i = 0; i < policyCount; i++) {
+                patches.replace("/dossier/policies/" + i + "/attainable_pension",
+                        table.attainablePension(i), oldPensions[i]);
             }
         }
 
         MutationResult result = (warnings != null && !warnings.isEmpty()) ? MutationResult.warnings(warnings) : MutationResult.success();
-        return result.withPatches(fwd, bwd);
+        return patches.applyTo(result);
     }
 }
@@ -0,0 +1,55 @@
+package com.pension.engine.mutation;
+
+import com.pension.engine.kernel.ParallelKernels;
+import com.pension.engine.patch.PatchMode;
+import com.pension.engine.scheme.SchemeRegistryClient;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Per-request settings and services handed to every {@link MutationHandler}. */
+public class MutationContext {
+
+    private final SchemeRegistryClient schemeClient;
+    private final PatchMode patchMode;
+    private final boolean lazyIndexation;
+    private final ParallelKernels kernels;
+    private final Map<String, Double> accrualRates;
+
+    public MutationContext(SchemeRegistryClient schemeClient, PatchMode patchMode) {
+        this(schemeClient, patchMode, false);
+    }
+
+    public MutationContext(SchemeRegistryClient schemeClient, PatchMode patchMode, boolean lazyIndexation) {
+        this(schemeClient, patchMode, lazyIndexation, ParallelKernels.SEQUENTIAL);
+    }
+
+    public MutationContext(SchemeRegistryClient schemeClient, PatchMode patchMode, boolean lazyIndexation,
+                           ParallelKernels kernels) {
+        this.schemeClient = schemeClient;
+        this.patchMode = patchMode;
+        this.lazyIndexation = lazyIndexation;
+        this.kernels = kernels;
+        this.accrualRates = schemeClient != null ? new HashMap<>() : null;
+    }
+
+    /** {@code null} when no scheme registry is configured. */
+    public SchemeRegistryClient getSchemeClient() { return schemeClient; }
+    public PatchMode getPatchMode() { return patchMode; }
+
+    /**
+     * Registry accrual rates by scheme id, filled in by the engine before any handler that
+     * {@link MutationHandler#usesAccrualRates() uses them} runs; {@code null} without a registry.
+     */
+    public Map<String, Double> getAccrualRates() { return accrualRates; }
+    public void addAccrualRates(Map<String, Double> rates) { accrualRates.putAll(rates); }
+
+    /**
+     * Whether {@code apply_indexation} may defer salary updates (see {@code Dossier#deferIndexation}).
+     * Only used when no patches are requested, since patches need every old and new salary.
+     */
+    public boolean isLazyIndexation() { return lazyIndexation; }
+
+    /** Where per-policy loops run; {@link ParallelKernels#SEQUENTIAL} unless parallel kernels are enabled. */
+    public ParallelKernels getKernels() { return kernels; }
+}
@@ -1,10 +1,27 @@
 package com.pension.engine.mutation;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
 import com.pension.engine.model.request.Mutation;
+import com.pension.engine.model.request.MutationProperties;
 import com.pension.engine.model.state.Situation;
-import com.pension.engine.scheme.SchemeRegistryClient;
+
+import java.io.IOException;
 
 public interface MutationHandler {
-    MutationResult execute(Situation situation, Mutation mutation, SchemeRegistryClient schemeClient, ObjectMapper mapper);
+
+    /**
+     * Binds {@code mutation_properties} into this handler's typed record. The parser is positioned
+     * on the value's first token and is left on its last one.
+     */
+    MutationProperties readProperties(JsonParser parser) throws IOException;
+
+    /**
+     * Whether {@link #execute} reads {@link MutationContext#getAccrualRates()}. The engine fetches
+     * the rates of every scheme in the dossier first, suspending the request if it has to wait.
+     */
+    default boolean usesAccrualRates() {
+        return false;
+    }
+
+    MutationResult execute(Situation situation, Mutation mutation, MutationContext context);
 }
@@ -1,5 +1,13 @@
 package com.pension.engine.mutation;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.pension.engine.model.request.Mutation;
+import com.pension.engine.model.request.MutationProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -19,4 +27,37 @@ public class MutationRegistry {
     public MutationHandler getHandler(String mutationDefinitionName) {
         return handlers.get(mutationDefinitionName);
     }
+
+    /**
+     * Streams {@code mutation_properties} into the typed record of the named mutation.
+     * Unknown mutations have their properties skipped and get {@code null}.
+     */
+    public MutationProperties readProperties(String mutationDefinitionName, JsonParser parser) throws IOException {
+        MutationHandler handler = handlers.get(mutationDefinitionName);
+        if (handler == null) {
+            parser.skipChildren();
+            return null;
+        }
+        return handler.readProperties(parser);
+    }
+
+    /**
+     * Returns the typed properties of a mutation, binding them from its JSON tree first if it did not
+     * come through the streaming reader (gRPC, databind).
+     */
+    public MutationProperties bindProperties(Mutation mutation) {
+        MutationProperties properties = mutation.getProperties();
+        if (properties != null) {
+            return properties;
+        }
+        JsonNode tree = mutation.getMutationProperties();
+        try (JsonParser parser = (tree != null ? tree : MissingNode.getInstance()).traverse()) {
+            parser.nextToken();
+            properties = readProperties(mutation.getMutationDefinitionName(), parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        mutation.setProperties(properties);
+        return properties;
+    }
 }
@@ -1,7 +1,7 @@
 package com.pension.engine.mutation;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.pension.engine.model.response.CalculationMessage;
+import com.pension.engine.patch.Patch;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -10,15 +10,15 @@ public class MutationResult {
 
     private final List<CalculationMessage> messages;
     private final boolean critical;
-    private JsonNode forwardPatch;
-    private JsonNode backwardPatch;
+    private Patch forwardPatch;
+    private Patch backwardPatch;
 
     private MutationResult(List<CalculationMessage> messages, boolean critical) {
         this.messages = messages;
         this.critical = critical;
     }
 
-    public MutationResult withPatches(JsonNode forward, JsonNode backward) {
+    public MutationResult withPatches(Patch forward, Patch backward) {
         this.forwardPatch = forward;
         this.backwardPatch = backward;
         return this;
@@ -57,6 +57,6 @@ public class MutationResult {
 
     public List<CalculationMessage> getMessages() { return messages; }
     public boolean isCritical() { return critical; }
-    public JsonNode getForwardPatch() { return forwardPatch; }
-    public JsonNode getBackwardPatch() { return backwardPatch; }
+    public Patch getForwardPatch() { return forwardPatch; }
+    public Patch getBackwardPatch() { return backwardPatch; }
 }
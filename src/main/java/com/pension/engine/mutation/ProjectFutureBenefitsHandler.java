@@ -1,18 +1,21 @@
 package com.pension.engine.mutation;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.pension.engine.kernel.ParallelKernels;
+import com.pension.engine.kernel.ProjectionSweep;
+import com.pension.engine.kernel.SalaryKernels;
 import com.pension.engine.model.request.Mutation;
+import com.pension.engine.model.request.MutationProperties;
+import com.pension.engine.model.request.ProjectFutureBenefitsProperties;
 import com.pension.engine.model.response.CalculationMessage;
 import com.pension.engine.model.state.Dossier;
-import com.pension.engine.model.state.Policy;
+import com.pension.engine.model.state.PolicyTable;
 import com.pension.engine.model.state.Projection;
 import com.pension.engine.model.state.Situation;
-import com.pension.engine.scheme.SchemeRegistryClient;
+import com.pension.engine.patch.PatchBuilder;
+import com.pension.engine.util.IsoDates;
 
-import java.time.LocalDate;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -20,8 +23,18 @@ import java.util.Map;
 public class ProjectFutureBenefitsHandler implements MutationHandler {
 
     @Override
-    public MutationResult execute(Situation situation, Mutation mutation, SchemeRegistryClient schemeClient, ObjectMapper mapper) {
-        JsonNode props = mutation.getMutationProperties();
+    public MutationProperties readProperties(JsonParser parser) throws IOException {
+        return ProjectFutureBenefitsProperties.read(parser);
+    }
+
+    @Override
+    public boolean usesAccrualRates() {
+        return true;
+    }
+
+    @Override
+    public MutationResult execute(Situation situation, Mutation mutation, MutationContext context) {
+        ProjectFutureBenefitsProperties props = (ProjectFutureBenefitsProperties) mutation.getProperties();
         Dossier dossier = situation.getDossier();
 
         // Validation
@@ -30,17 +43,24 @@ public class ProjectFutureBenefitsHandler implements MutationHandler {
                     "CRITICAL", "DOSSIER_NOT_FOUND", "No dossier exists in the situation"));
         }
 
-        List<Policy> policies = dossier.getPolicies();
-        if (policies.isEmpty()) {
+        PolicyTable table = dossier.getPolicyTable();
+        int policyCount = table.size();
+        if (policyCount == 0) {
             return MutationResult.critical(new CalculationMessage(
                     "CRITICAL", "NO_POLICIES", "Dossier has no policies"));
         }
 
-        String startDateStr = props.path("projection_start_date").asText();
-        String endDateStr = props.path("projection_end_date").asText();
-        int intervalMonths = props.path("projection_interval_months").asInt();
-
-        if (endDateStr.compareTo(startDateStr) <= 0) {
+        String startDateStr = props.projectionStartDate();
+        String endDateStr = props.projectionEndDate();
+        int intervalMonths = props.projectionIntervalMonths();
+
+        // Dates were parsed at ingest; unparseable ones keep the original string comparisons and
+        // fail when the grid is built, as before
+        boolean validDates = props.projectionStartDay() != IsoDates.INVALID && props.projectionEndDay() != IsoDates.INVALID;
+        boolean emptyRange = validDates
+                ? props.projectionEndDay() <= props.projectionStartDay()
+                : endDateStr.compareTo(startDateStr) <= 0;
+        if (emptyRange) {
             return MutationResult.critical(new CalculationMessage(
                     "CRITICAL", "INVALID_DATE_RANGE", "Projection end date must be after start date"));
         }
@@ -48,113 +68,103 @@ public class ProjectFutureBenefitsHandler implements MutationHandler {
         List<CalculationMessage> warnings = null;
 
         // Check projection before employment warning
-        for (int i = 0; i < policies.size(); i++) {
-            Policy policy = policies.get(i);
-            if (startDateStr.compareTo(policy.getEmploymentStartDate()) < 0) {
+        boolean compareDays = validDates && table.hasValidStartDays();
+        int[] empStartDays = table.startDays();
+        for (int i = 0; i < policyCount; i++) {
+            boolean beforeEmployment = compareDays
+                    ? props.projectionStartDay() < empStartDays[i]
+                    : startDateStr.compareTo(table.employmentStartDate(i)) < 0;
+            if (beforeEmployment) {
                 if (warnings == null) warnings = new ArrayList<>(1);
                 warnings.add(new CalculationMessage(
                         "WARNING", "PROJECTION_BEFORE_EMPLOYMENT",
-                        "Projection start date is before employment start date for policy " + policy.getPolicyId()));
+                        "Projection start date is before employment start date for policy " + table.policyId(i)));
             }
         }
 
-        // Fetch accrual rates
-        Map<String, Double> accrualRates = null;
-        if (schemeClient != null) {
-            accrualRates = schemeClient.getAccrualRates(policies);
+        // Registry accrual rates (fetched by the engine), resolved per scheme ordinal
+        double[] schemeRates = null;
+        Map<String, Double> accrualRates = context.getAccrualRates();
+        if (accrualRates != null) {
+            List<String> schemes = table.schemes();
+            schemeRates = new double[schemes.size()];
+            for (int s = 0; s < schemeRates.length; s++) {
+                schemeRates[s] = accrualRates.getOrDefault(schemes.get(s), 0.02);
+            }
         }
 
-        int policyCount = policies.size();
-        LocalDate startDate = LocalDate.parse(startDateStr);
-        LocalDate endDate = LocalDate.parse(endDateStr);
+        int startDay = IsoDates.require(props.projectionStartDay(), startDateStr);
+        int endDay = IsoDates.require(props.projectionEndDay(), endDateStr);
 
-        // Pre-parse employment start dates as epoch days and compute effective salaries
-        long[] empStartDays = new long[policyCount];
+        // Start days come pre-parsed from the table; effective salaries are fixed for the whole grid
+        table.requireValidStartDays();
+        double[] salaries = table.salaries();
+        double[] partTimeFactors = table.partTimeFactors();
+        int[] schemeOrdinals = table.schemeOrdinals();
         double[] effectiveSalaries = new double[policyCount];
         double[] accrualRateArr = new double[policyCount];
         for (int i = 0; i < policyCount; i++) {
-            Policy policy = policies.get(i);
-            empStartDays[i] = LocalDate.parse(policy.getEmploymentStartDate()).toEpochDay();
-            effectiveSalaries[i] = policy.getSalary() * policy.getPartTimeFactor();
-            if (accrualRates != null) {
-                accrualRateArr[i] = accrualRates.getOrDefault(policy.getSchemeId(), 0.02);
-            } else {
-                accrualRateArr[i] = 0.02;
-            }
+            effectiveSalaries[i] = salaries[i] * partTimeFactors[i];
+            accrualRateArr[i] = schemeRates != null ? schemeRates[schemeOrdinals[i]] : 0.02;
         }
 
-        // Count projection dates first to pre-allocate
+        // Build the projection grid up front
         int dateCount = 0;
-        for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusMonths(intervalMonths)) {
+        for (int d = startDay; d <= endDay; d = IsoDates.plusMonths(d, intervalMonths)) {
             dateCount++;
         }
-
-        // Initialize projections for each policy
-        List<List<Projection>> allProjections = new ArrayList<>(policyCount);
-        for (int i = 0; i < policyCount; i++) {
-            allProjections.add(new ArrayList<>(dateCount));
+        int[] dates = new int[dateCount];
+        for (int n = 0, d = startDay; n < dateCount; n++, d = IsoDates.plusMonths(d, intervalMonths)) {
+            dates[n] = d;
         }
 
-        // Reuse arrays across projection dates
-        double[] years = new double[policyCount];
-
-        // For each projection date, calculate pension using the same formula as retirement
-        for (LocalDate projDate = startDate; !projDate.isAfter(endDate); projDate = projDate.plusMonths(intervalMonths)) {
-            long projDayEpoch = projDate.toEpochDay();
-            double totalYears = 0;
-            double weightedSum = 0;
-
-            for (int i = 0; i < policyCount; i++) {
-                long daysDiff = projDayEpoch - empStartDays[i];
-                if (daysDiff >= 0) {
-                    years[i] = daysDiff / 365.25;
-                } else {
-                    years[i] = 0;
-                }
-                totalYears += years[i];
-                weightedSum += effectiveSalaries[i] * years[i];
-            }
+        // Weighted average salary for every date from one sweep over the policies by start day
+        double[] weightedAvgs = ProjectionSweep.weightedAverages(empStartDays, effectiveSalaries, policyCount, dates);
 
-            double weightedAvg = totalYears > 0 ? weightedSum / totalYears : 0;
-            String dateStr = projDate.toString();
+        String[] dateStrs = new String[dateCount];
+        double[] dateDays = new double[dateCount];
+        for (int n = 0; n < dateCount; n++) {
+            dateStrs[n] = IsoDates.toIsoString(dates[n]);
+            dateDays[n] = dates[n];
+        }
 
-            for (int i = 0; i < policyCount; i++) {
-                double policyPension;
-                if (totalYears > 0) {
-                    policyPension = weightedAvg * years[i] * accrualRateArr[i];
-                } else {
-                    policyPension = 0;
+        // Each policy's projections use the same formula as retirement, and policies are
+        // independent, so the grid may be split across threads by policy. The average is 0 when
+        // no policy has service yet, which zeroes every pension as before.
+        SalaryKernels math = SalaryKernels.active();
+        List<Projection>[] allProjections = newProjectionLists(policyCount);
+        int cells = dateCount;
+        context.getKernels().forRange(ParallelKernels.Site.PROJECTION, policyCount, cells, (from, to) -> {
+            double[] row = new double[cells];
+            for (int i = from; i < to; i++) {
+                math.projectionRow(dateDays, weightedAvgs, empStartDays[i], accrualRateArr[i], row, cells);
+                List<Projection> projections = new ArrayList<>(cells);
+                for (int n = 0; n < cells; n++) {
+                    projections.add(new Projection(dateStrs[n], row[n]));
                 }
-                allProjections.get(i).add(new Projection(dateStr, policyPension));
+                allProjections[i] = projections;
             }
-        }
+        });
 
-        // Capture old projections and set new ones
-        ArrayNode fwd = mapper.createArrayNode();
-        ArrayNode bwd = mapper.createArrayNode();
+        // Capture old projections and set new ones. Projection lists are replaced, never
+        // mutated, so the patches can hold on to them directly.
+        PatchBuilder patches = new PatchBuilder(context.getPatchMode(), policyCount);
 
         for (int i = 0; i < policyCount; i++) {
-            List<Projection> oldProjections = policies.get(i).getProjections();
-            policies.get(i).setProjections(allProjections.get(i));
-
-            String path = "/dossier/policies/" + i + "/projections";
-
-            ObjectNode fwdOp = fwd.addObject();
-            fwdOp.put("op", "replace");
-            fwdOp.put("path", path);
-            fwdOp.set("value", mapper.valueToTree(allProjections.get(i)));
-
-            ObjectNode bwdOp = bwd.addObject();
-            bwdOp.put("op", "replace");
-            bwdOp.put("path", path);
-            if (oldProjections != null) {
-                bwdOp.set("value", mapper.valueToTree(oldProjections));
-            } else {
-                bwdOp.putNull("value");
+            List<Projection> oldProjections = table.projections(i);
+            table.setProjections(i, allProjections[i]);
+
+            if (patches.enabled()) {
+                patches.replace("/dossier/policies/" + i + "/projections", allProjections[i], oldProjections);
             }
         }
 
         MutationResult result = (warnings != null && !warnings.isEmpty()) ? MutationResult.warnings(warnings) : MutationResult.success();
-        return result.withPatches(fwd, bwd);
+        return patches.applyTo(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Projection>[] newProjectionLists(int policyCount) {
+        return new List[policyCount];
     }
 }
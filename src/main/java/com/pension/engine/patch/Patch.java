@@ -0,0 +1,43 @@
+package com.pension.engine.patch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.pension.engine.json.CalculationResponseWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** An RFC 6902 patch document: an ordered list of {@link PatchOperation}s. */
+public final class Patch implements JsonSerializable {
+
+    public static final Patch EMPTY = new Patch(List.of());
+
+    private final List<PatchOperation> operations;
+
+    private Patch(List<PatchOperation> operations) {
+        this.operations = operations;
+    }
+
+    Patch(int expectedSize) {
+        this(new ArrayList<>(expectedSize));
+    }
+
+    void add(PatchOperation operation) {
+        operations.add(operation);
+    }
+
+    public List<PatchOperation> getOperations() { return operations; }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        CalculationResponseWriter.writePatch(gen, this);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+}
@@ -0,0 +1,41 @@
+package com.pension.engine.patch;
+
+import com.pension.engine.mutation.MutationResult;
+
+/**
+ * Collects the forward and backward patch of one mutation according to the request's
+ * {@link PatchMode}. Handlers check {@link #enabled()} before computing paths or snapshot values,
+ * so with {@link PatchMode#NONE} no patch work happens at all.
+ */
+public final class PatchBuilder {
+
+    private final Patch forward;
+    private final Patch backward;
+
+    public PatchBuilder(PatchMode mode, int expectedOperations) {
+        this.forward = mode.forward() ? new Patch(expectedOperations) : null;
+        this.backward = mode.backward() ? new Patch(expectedOperations) : null;
+    }
+
+    public boolean enabled() { return forward != null; }
+
+    /** Forward {@code replace} to {@code newValue}; backward {@code replace} back to {@code oldValue}. */
+    public void replace(String path, Object newValue, Object oldValue) {
+        forward.add(new PatchOperation(PatchOperation.REPLACE, path, newValue));
+        if (backward != null) {
+            backward.add(new PatchOperation(PatchOperation.REPLACE, path, oldValue));
+        }
+    }
+
+    /** Forward {@code add} of {@code value}; backward {@code remove} of the same path. */
+    public void add(String path, Object value) {
+        forward.add(new PatchOperation(PatchOperation.ADD, path, value));
+        if (backward != null) {
+            backward.add(new PatchOperation(PatchOperation.REMOVE, path, null));
+        }
+    }
+
+    public MutationResult applyTo(MutationResult result) {
+        return result.withPatches(forward, backward);
+    }
+}
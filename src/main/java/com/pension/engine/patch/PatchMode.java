@@ -0,0 +1,34 @@
+package com.pension.engine.patch;
+
+import java.util.Locale;
+
+/**
+ * How much JSON Patch output a request wants. Handlers skip building whatever is not requested,
+ * and the corresponding fields are left out of each processed mutation.
+ */
+public enum PatchMode {
+    NONE,
+    FORWARD,
+    FORWARD_AND_BACKWARD;
+
+    public static final PatchMode DEFAULT = FORWARD_AND_BACKWARD;
+
+    public boolean forward() { return this != NONE; }
+    public boolean backward() { return this == FORWARD_AND_BACKWARD; }
+
+    /**
+     * Parses the {@code patch_mode} request option ({@code none}, {@code forward},
+     * {@code forward_and_backward}); {@code null} selects the default.
+     */
+    public static PatchMode parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return DEFAULT;
+        }
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "none": return NONE;
+            case "forward": return FORWARD;
+            case "forward_and_backward": return FORWARD_AND_BACKWARD;
+            default: throw new IllegalArgumentException("Invalid patch_mode: " + value);
+        }
+    }
+}
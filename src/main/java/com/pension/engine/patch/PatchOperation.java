@@ -0,0 +1,28 @@
+package com.pension.engine.patch;
+
+/**
+ * One RFC 6902 operation. {@code value} is kept as the engine's own object rather than a JSON
+ * tree: {@code null}, {@code String}, {@code Double}, a detached {@code Dossier} or {@code Policy}
+ * snapshot, or a {@code List<Projection>}. {@code remove} operations carry no value.
+ */
+public final class PatchOperation {
+
+    public static final String ADD = "add";
+    public static final String REMOVE = "remove";
+    public static final String REPLACE = "replace";
+
+    private final String op;
+    private final String path;
+    private final Object value;
+
+    public PatchOperation(String op, String path, Object value) {
+        this.op = op;
+        this.path = path;
+        this.value = value;
+    }
+
+    public String getOp() { return op; }
+    public String getPath() { return path; }
+    public Object getValue() { return value; }
+    public boolean hasValue() { return !REMOVE.equals(op); }
+}
@@ -0,0 +1,78 @@
+package com.pension.engine.scheme;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calling the scheme registry after {@code failureThreshold} failures in a row. While open,
+ * {@link #allowRequest} refuses every call for {@code openMillis}; after that one probe is let
+ * through, which closes the breaker on success or reopens it on failure.
+ */
+final class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private int consecutiveFailures;
+    private boolean open;
+    private boolean probing;
+    private long openUntilNanos;
+
+    /** {@code failureThreshold} of 0 never opens. */
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /** {@code SCHEME_BREAKER_FAILURES} (default 5) and {@code SCHEME_BREAKER_OPEN_MS} (default 5000). */
+    static CircuitBreaker fromEnv() {
+        Map<String, String> env = System.getenv();
+        return new CircuitBreaker(
+                Integer.parseInt(env.getOrDefault("SCHEME_BREAKER_FAILURES", "5")),
+                Long.parseLong(env.getOrDefault("SCHEME_BREAKER_OPEN_MS", "5000")));
+    }
+
+    synchronized boolean allowRequest(long now) {
+        if (!open) {
+            return true;
+        }
+        if (probing || now - openUntilNanos < 0) {
+            return false;
+        }
+        probing = true;
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        if (open) {
+            System.out.println("Scheme registry recovered, circuit closed");
+        }
+        consecutiveFailures = 0;
+        open = false;
+        probing = false;
+    }
+
+    /**
+     * A call that ended with neither an answer nor a registry failure, because its caller's
+     * deadline cut it off. Counts for nothing; if it was the probe, the next call probes instead.
+     */
+    synchronized void onAbandoned() {
+        probing = false;
+    }
+
+    synchronized void onFailure(long now) {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        consecutiveFailures++;
+        if (probing || (!open && consecutiveFailures >= failureThreshold)) {
+            if (!open) {
+                System.err.println("Scheme registry failed " + consecutiveFailures
+                        + " times in a row, circuit open for " + TimeUnit.NANOSECONDS.toMillis(openNanos) + " ms");
+            }
+            open = true;
+            probing = false;
+            openUntilNanos = now + openNanos;
+        }
+    }
+}
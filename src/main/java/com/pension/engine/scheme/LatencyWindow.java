@@ -0,0 +1,52 @@
+package com.pension.engine.scheme;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies of the last {@code size} successful registry calls, and a percentile of them used as
+ * the hedging delay. The percentile is recomputed every {@link #RECOMPUTE_EVERY} samples rather
+ * than per call; concurrent writers may overwrite each other's slot, which only loses a sample.
+ */
+final class LatencyWindow {
+
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final long[] samples;
+    private final double percentile;
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile long percentileNanos;
+
+    /** {@code percentile} of 0 turns hedging off. */
+    LatencyWindow(int size, double percentile) {
+        this.samples = new long[Math.max(MIN_SAMPLES, size)];
+        this.percentile = percentile;
+    }
+
+    /** {@code SCHEME_HEDGE_PERCENTILE} (default 95; 0 disables hedging) over the last 512 calls. */
+    static LatencyWindow fromEnv() {
+        Map<String, String> env = System.getenv();
+        return new LatencyWindow(512, Double.parseDouble(env.getOrDefault("SCHEME_HEDGE_PERCENTILE", "95")));
+    }
+
+    void record(long nanos) {
+        long n = recorded.getAndIncrement();
+        samples[(int) (n % samples.length)] = nanos;
+        if ((n + 1) % RECOMPUTE_EVERY == 0 && n + 1 >= MIN_SAMPLES) {
+            long[] copy = Arrays.copyOf(samples, (int) Math.min(n + 1, samples.length));
+            Arrays.sort(copy);
+            int index = (int) Math.ceil(percentile / 100 * copy.length) - 1;
+            percentileNanos = copy[Math.max(0, Math.min(copy.length - 1, index))];
+        }
+    }
+
+    /** How long to wait before hedging a call, or -1 when hedging is off or there are too few samples. */
+    long hedgeDelayNanos() {
+        if (percentile <= 0 || percentileNanos == 0) {
+            return -1;
+        }
+        return percentileNanos;
+    }
+}
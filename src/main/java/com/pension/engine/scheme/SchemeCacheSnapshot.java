@@ -0,0 +1,184 @@
+package com.pension.engine.scheme;
+
+import io.vertx.core.Vertx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Scheme rates saved to a local file so a restarted process starts with a warm cache.
+ *
+ * <p>Layout, big-endian: magic {@code "PSRC"}, format version, entry count, then per entry the
+ * UTF-8 scheme id (length-prefixed {@code short}) and its rate as a {@code double}, followed by a
+ * CRC32 of everything before it. Only registry answers are written, never negative entries. A
+ * file with the wrong magic, version, length or checksum is ignored. Loaded rates go into the
+ * cache as stale: they are served at once and refreshed from the registry in the background.
+ */
+public final class SchemeCacheSnapshot {
+
+    private static final int MAGIC = 0x50535243; // "PSRC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int TRAILER_BYTES = 8;
+
+    private SchemeCacheSnapshot() {}
+
+    /**
+     * Wires the snapshot and preload list into {@code client} from the environment:
+     * {@code SCHEME_CACHE_SNAPSHOT} (file path; unset disables snapshots),
+     * {@code SCHEME_CACHE_SNAPSHOT_INTERVAL_MS} (default 60000; 0 writes only on shutdown) and
+     * {@code SCHEME_PRELOAD_IDS} (comma-separated scheme ids fetched at startup). The snapshot is
+     * also written on shutdown.
+     *
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public static void install(Vertx vertx, SchemeRegistryClient client) {
+        List<String> warm = new ArrayList<>();
+        String preload = System.getenv("SCHEME_PRELOAD_IDS");
+        if (preload != null && !preload.isBlank()) {
+            for (String schemeId : preload.split(",")) {
+                if (!schemeId.isBlank()) {
+                    warm.add(schemeId.trim());
+                }
+            }
+        }
+
+        String file = System.getenv("SCHEME_CACHE_SNAPSHOT");
+        if (file != null && !file.isEmpty()) {
+            Path path = Paths.get(file);
+            SchemeRateCache cache = client.cache();
+            try {
+                Map<String, Double> loaded = read(path);
+                long now = System.nanoTime();
+                loaded.forEach((schemeId, rate) -> cache.putStale(schemeId, rate, now));
+                warm.addAll(loaded.keySet());
+                if (!loaded.isEmpty()) {
+                    System.out.println("Loaded " + loaded.size() + " scheme rates from " + path);
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring scheme cache snapshot " + path + ": " + e.getMessage());
+            }
+
+            long interval = Long.parseLong(System.getenv().getOrDefault("SCHEME_CACHE_SNAPSHOT_INTERVAL_MS", "60000"));
+            if (interval < 0) {
+                throw new IllegalArgumentException("SCHEME_CACHE_SNAPSHOT_INTERVAL_MS must not be negative: " + interval);
+            }
+            if (interval > 0) {
+                vertx.setPeriodic(interval, id -> vertx.executeBlocking(() -> {
+                    write(path, cache.answers());
+                    return null;
+                }, false).onFailure(err -> System.err.println("Failed to write scheme cache snapshot: " + err.getMessage())));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    write(path, cache.answers());
+                } catch (IOException e) {
+                    System.err.println("Failed to write scheme cache snapshot: " + e.getMessage());
+                }
+            }, "scheme-snapshot"));
+        }
+
+        // Refresh snapshot entries and fetch the preload list without holding up startup
+        if (!warm.isEmpty()) {
+            client.prefetch(warm);
+        }
+    }
+
+    /** Writes {@code rates} to a temporary file next to {@code path}, then moves it into place. */
+    static void write(Path path, Map<String, Double> rates) throws IOException {
+        List<byte[]> ids = new ArrayList<>(rates.size());
+        double[] values = new double[rates.size()];
+        int size = HEADER_BYTES + TRAILER_BYTES;
+        for (Map.Entry<String, Double> e : rates.entrySet()) {
+            byte[] id = e.getKey().getBytes(StandardCharsets.UTF_8);
+            if (id.length > Short.MAX_VALUE) {
+                continue;
+            }
+            values[ids.size()] = e.getValue();
+            ids.add(id);
+            size += Short.BYTES + id.length + Double.BYTES;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            byte[] id = ids.get(i);
+            buf.putShort((short) id.length).put(id).putDouble(values[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putLong(crc.getValue());
+        buf.flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** The rates in {@code path}, or none if it does not exist. Throws on a damaged or foreign file. */
+    static Map<String, Double> read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Map.of();
+        }
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = in.size();
+            if (length < HEADER_BYTES + TRAILER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("unexpected length " + length);
+            }
+            MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int bodyBytes = (int) length - TRAILER_BYTES;
+
+            if (buf.getInt(0) != MAGIC) {
+                throw new IOException("not a scheme cache snapshot");
+            }
+            if (buf.getInt(4) != VERSION) {
+                throw new IOException("unsupported version " + buf.getInt(4));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.duplicate().limit(bodyBytes));
+            if (crc.getValue() != buf.getLong(bodyBytes)) {
+                throw new IOException("checksum mismatch");
+            }
+
+            int count = buf.getInt(8);
+            Map<String, Double> rates = new HashMap<>(Math.max(16, count * 2));
+            buf.position(HEADER_BYTES).limit(bodyBytes);
+            byte[] id = new byte[64];
+            try {
+                for (int i = 0; i < count; i++) {
+                    int idLength = buf.getShort();
+                    if (idLength > id.length) {
+                        id = new byte[idLength];
+                    }
+                    buf.get(id, 0, idLength);
+                    rates.put(new String(id, 0, idLength, StandardCharsets.UTF_8), buf.getDouble());
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("truncated entries", e);
+            }
+            if (buf.hasRemaining()) {
+                throw new IOException(buf.remaining() + " bytes after the last entry");
+            }
+            return rates;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.pension.engine.scheme;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accrual rates by scheme id with a time to live and a size bound.
+ *
+ * <p>A registry answer is fresh for {@code ttl}; after that it is stale and still served while
+ * {@link SchemeRegistryClient} refreshes it in the background. A failed lookup stores the default
+ * rate as a negative entry for only {@code negativeTtl}, after which the scheme is a plain miss
+ * again; a failed refresh keeps the stale answer and retries after {@code negativeTtl}. Past
+ * {@code maxEntries} the least recently read entries are evicted, an eighth at a time.
+ */
+public final class SchemeRateCache {
+
+    /** What a lookup should do with an entry, as of the time it is read. */
+    enum State { FRESH, STALE, MISS }
+
+    static final class Entry {
+        final double rate;
+        /** The default rate stored after a failed lookup, not a registry answer. */
+        final boolean negative;
+        final long freshUntilNanos;
+        volatile long lastReadNanos;
+
+        Entry(double rate, boolean negative, long freshUntilNanos, long now) {
+            this.rate = rate;
+            this.negative = negative;
+            this.freshUntilNanos = freshUntilNanos;
+            this.lastReadNanos = now;
+        }
+
+        State state(long now) {
+            if (now - freshUntilNanos < 0) {
+                return State.FRESH;
+            }
+            return negative ? State.MISS : State.STALE;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final int maxEntries;
+
+    public SchemeRateCache(long ttlMillis, long negativeTtlMillis, int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * {@code SCHEME_CACHE_TTL_MS} (default 5 minutes), {@code SCHEME_CACHE_NEGATIVE_TTL_MS}
+     * (default 10 seconds) and {@code SCHEME_CACHE_MAX_ENTRIES} (default 10000).
+     */
+    public static SchemeRateCache fromEnv() {
+        Map<String, String> env = System.getenv();
+        return new SchemeRateCache(
+                Long.parseLong(env.getOrDefault("SCHEME_CACHE_TTL_MS", "300000")),
+                Long.parseLong(env.getOrDefault("SCHEME_CACHE_NEGATIVE_TTL_MS", "10000")),
+                Integer.parseInt(env.getOrDefault("SCHEME_CACHE_MAX_ENTRIES", "10000")));
+    }
+
+    /** The entry for {@code schemeId}, marked as read; null if there is none. */
+    Entry get(String schemeId, long now) {
+        Entry entry = entries.get(schemeId);
+        if (entry != null) {
+            entry.lastReadNanos = now;
+        }
+        return entry;
+    }
+
+    /** Stores a registry answer, fresh for the TTL. */
+    void putAnswer(String schemeId, double rate, long now) {
+        put(schemeId, new Entry(rate, false, now + ttlNanos, now));
+    }
+
+    /**
+     * Records a failed lookup: a stale answer is kept and retried after the negative TTL, otherwise
+     * {@code fallbackRate} is stored as a negative entry. Returns the rate now in the cache.
+     */
+    double putFailure(String schemeId, double fallbackRate, long now) {
+        Entry previous = entries.get(schemeId);
+        Entry entry = previous != null && !previous.negative
+                ? new Entry(previous.rate, false, now + negativeTtlNanos, now)
+                : new Entry(fallbackRate, true, now + negativeTtlNanos, now);
+        put(schemeId, entry);
+        return entry.rate;
+    }
+
+    /**
+     * Stores a rate from an earlier run (see {@link SchemeCacheSnapshot}) as already stale, so it is
+     * served at once and refreshed on first use. Does not overwrite anything already cached.
+     */
+    void putStale(String schemeId, double rate, long now) {
+        if (entries.putIfAbsent(schemeId, new Entry(rate, false, now, now)) == null && entries.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    /** Registry answers currently held, fresh or stale; negative entries are left out. */
+    Map<String, Double> answers() {
+        Map<String, Double> answers = new HashMap<>(entries.size());
+        entries.forEach((schemeId, entry) -> {
+            if (!entry.negative) {
+                answers.put(schemeId, entry.rate);
+            }
+        });
+        return answers;
+    }
+
+    private void put(String schemeId, Entry entry) {
+        entries.put(schemeId, entry);
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    /** Drops least recently read entries until an eighth of the bound is free, so it runs rarely. */
+    private synchronized void evict() {
+        int excess = entries.size() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        // Read times are copied first: they keep changing under concurrent lookups
+        List<Candidate> candidates = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            candidates.add(new Candidate(e.getKey(), e.getValue(), e.getValue().lastReadNanos));
+        }
+        candidates.sort((a, b) -> Long.compare(a.lastReadNanos(), b.lastReadNanos()));
+        int toEvict = Math.min(candidates.size(), excess + maxEntries / 8);
+        for (int i = 0; i < toEvict; i++) {
+            Candidate victim = candidates.get(i);
+            entries.remove(victim.schemeId(), victim.entry());
+        }
+    }
+
+    private record Candidate(String schemeId, Entry entry, long lastReadNanos) {}
+}
@@ -1,29 +1,100 @@
 package com.pension.engine.scheme;
 
-import com.pension.engine.model.state.Policy;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Accrual rates from the scheme registry, kept in a {@link SchemeRateCache}. One instance is
+ * shared by every verticle (see {@code Main}); concurrent misses and refreshes for the same
+ * scheme, from any thread, share a single registry call.
+ *
+ * <p>Fetches are collected for {@code batchWindowMs} (or until {@code batchMaxIds} are waiting)
+ * and sent as one {@code GET /schemes?ids=a,b,c}. A registry that answers that with 404, 405 or
+ * 501 has no bulk endpoint; from then on every scheme is fetched with {@code GET /schemes/{id}}.
+ *
+ * <p>A registry call still unanswered after the recent latency percentile is hedged with a second,
+ * identical call, and the first answer wins. After repeated failures a {@link CircuitBreaker}
+ * stops calling the registry for a while, so lookups fall straight back to the cached or default
+ * rate. A lookup never waits past its deadline: schemes still being fetched then get their cached
+ * or default rate. Registry calls are bounded by that deadline too (the latest one among the
+ * lookups waiting on them); a call cut off by it is neither a breaker failure nor a negative cache
+ * entry. If a lookup that joined the call later still has time, the call is made again for it;
+ * otherwise the next lookup of the scheme tries again.
+ */
 public class SchemeRegistryClient {
 
+    private static final double DEFAULT_ACCRUAL_RATE = 0.02;
+    private static final long TIMEOUT_MS = 2000;
+
+    private final Vertx vertx;
     private final WebClient webClient;
     private final String baseUrl;
-    private final ConcurrentHashMap<String, Double> cache = new ConcurrentHashMap<>();
+    private final SchemeRateCache cache;
+    private final CircuitBreaker breaker;
+    private final LatencyWindow latencies;
+    private final long deadlineMs;
+    /** Registry calls under way, removed once their outcome is in {@link #cache}. */
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private final long batchWindowMs;
+    private final int batchMaxIds;
+    private volatile boolean bulkSupported;
+    /** Fetches waiting for the batch window; guarded by itself, as is the deadline. */
+    private final Map<String, Promise<Double>> pending = new LinkedHashMap<>();
+    /** The latest deadline among {@link #pending}. */
+    private long pendingDeadlineNanos;
+    private boolean flushScheduled;
 
+    /**
+     * Configured from {@code SCHEME_REGISTRY_BULK} (default true), {@code SCHEME_BATCH_WINDOW_MS}
+     * (default 2), {@code SCHEME_BATCH_MAX_IDS} (default 64) and {@code SCHEME_DEADLINE_MS}
+     * (default 2000), plus the cache, breaker and hedging variables.
+     */
     public SchemeRegistryClient(Vertx vertx, String baseUrl) {
+        this(vertx, baseUrl, SchemeRateCache.fromEnv(), CircuitBreaker.fromEnv(), LatencyWindow.fromEnv(),
+                Boolean.parseBoolean(System.getenv().getOrDefault("SCHEME_REGISTRY_BULK", "true")),
+                Long.parseLong(System.getenv().getOrDefault("SCHEME_BATCH_WINDOW_MS", "2")),
+                Integer.parseInt(System.getenv().getOrDefault("SCHEME_BATCH_MAX_IDS", "64")),
+                Long.parseLong(System.getenv().getOrDefault("SCHEME_DEADLINE_MS", "2000")));
+    }
+
+    /**
+     * @param bulk          try the bulk endpoint; false sends one request per scheme
+     * @param batchWindowMs how long a fetch waits for others to share its request; 0 sends at once
+     * @param deadlineMs    longest a lookup waits for the registry, unless the caller gives less
+     */
+    SchemeRegistryClient(Vertx vertx, String baseUrl, SchemeRateCache cache, CircuitBreaker breaker,
+                         LatencyWindow latencies, boolean bulk, long batchWindowMs, int batchMaxIds,
+                         long deadlineMs) {
+        this.vertx = vertx;
         this.baseUrl = baseUrl;
+        this.cache = cache;
+        this.breaker = breaker;
+        this.latencies = latencies;
+        this.deadlineMs = Math.max(1, deadlineMs);
+        this.bulkSupported = bulk;
+        this.batchWindowMs = batchWindowMs;
+        this.batchMaxIds = Math.max(1, batchMaxIds);
         WebClientOptions options = new WebClientOptions()
                 .setMaxPoolSize(20)
                 .setConnectTimeout(2000)
@@ -31,69 +102,466 @@ public class SchemeRegistryClient {
         this.webClient = WebClient.create(vertx, options);
     }
 
-    public Map<String, Double> getAccrualRates(List<Policy> policies) {
-        // Collect unique scheme IDs
-        Set<String> uniqueSchemeIds = new HashSet<>();
-        for (Policy policy : policies) {
-            uniqueSchemeIds.add(policy.getSchemeId());
+    /**
+     * The {@link System#nanoTime} by which lookups for a request must finish: {@code budgetMs} from
+     * now (the caller's remaining time, e.g. from a request header), capped by the configured
+     * deadline; 0 or less uses the configured deadline.
+     */
+    public long deadline(long budgetMs) {
+        long ms = budgetMs > 0 ? Math.min(budgetMs, deadlineMs) : deadlineMs;
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    /** {@link #accrualRates(Collection, long)} with the configured deadline. */
+    public Future<Map<String, Double>> accrualRates(Collection<String> schemeIds) {
+        return accrualRates(schemeIds, deadline(0));
+    }
+
+    /**
+     * Accrual rates of {@code schemeIds}, fetching the uncached ones in parallel. Never fails: a
+     * scheme the registry does not answer for by {@code deadlineNanos} gets its cached or the
+     * default rate. Already complete when every scheme is cached, fresh or stale (stale ones are
+     * refreshed in the background); otherwise it completes on the caller's context.
+     */
+    public Future<Map<String, Double>> accrualRates(Collection<String> schemeIds, long deadlineNanos) {
+        Future<Map<String, Double>> rates = lookup(schemeIds, deadlineNanos);
+        // A shared fetch completes on the context of whoever started it; hop back to ours
+        Context caller = Vertx.currentContext();
+        if (caller == null || rates.isComplete()) {
+            return rates;
+        }
+        Promise<Map<String, Double>> onCaller = Promise.promise();
+        rates.onComplete(ar -> {
+            if (Vertx.currentContext() == caller) {
+                onCaller.handle(ar);
+            } else {
+                caller.runOnContext(v -> onCaller.handle(ar));
+            }
+        });
+        return onCaller.future();
+    }
+
+    /**
+     * Starts fetches for those of {@code schemeIds} without a fresh rate, without waiting for them.
+     * A later {@link #accrualRates} joins the calls still in flight.
+     */
+    public void prefetch(Collection<String> schemeIds) {
+        long now = System.nanoTime();
+        long deadlineNanos = deadline(0);
+        for (String schemeId : schemeIds) {
+            SchemeRateCache.Entry entry = cache.get(schemeId, now);
+            if (entry == null || entry.state(now) != SchemeRateCache.State.FRESH) {
+                fetchOnce(schemeId, deadlineNanos);
+            }
+        }
+    }
+
+    /**
+     * The rates a lookup of {@code schemeIds} would use right now without fetching, fresh or stale;
+     * schemes it would have to fetch are left out.
+     */
+    public Map<String, Double> cachedRates(Collection<String> schemeIds) {
+        long now = System.nanoTime();
+        Map<String, Double> rates = new HashMap<>(schemeIds.size());
+        for (String schemeId : schemeIds) {
+            SchemeRateCache.Entry entry = cache.get(schemeId, now);
+            if (entry != null && entry.state(now) != SchemeRateCache.State.MISS) {
+                rates.put(schemeId, entry.rate);
+            }
         }
+        return rates;
+    }
+
+    SchemeRateCache cache() {
+        return cache;
+    }
 
-        // Check cache for all, collect missing
-        Map<String, Double> result = new HashMap<>(uniqueSchemeIds.size());
-        Set<String> toFetch = new HashSet<>();
-        for (String schemeId : uniqueSchemeIds) {
-            Double cached = cache.get(schemeId);
-            if (cached != null) {
-                result.put(schemeId, cached);
+    /**
+     * {@link #accrualRates} for callers that may block (workers, the offline batch), with the
+     * configured deadline. Schemes still unanswered by then get their cached or the default rate.
+     */
+    public Map<String, Double> getAccrualRates(Collection<String> schemeIds) {
+        long deadlineNanos = deadline(0);
+        try {
+            // No hop back to the caller's context: a blocked worker pool could never run it
+            return lookup(schemeIds, deadlineNanos).toCompletionStage().toCompletableFuture()
+                    .get(deadlineMs + 50, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            long now = System.nanoTime();
+            Map<String, Double> result = new HashMap<>(schemeIds.size());
+            for (String schemeId : schemeIds) {
+                SchemeRateCache.Entry entry = cache.get(schemeId, now);
+                result.put(schemeId, entry != null ? entry.rate : DEFAULT_ACCRUAL_RATE);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Cached rates plus shared fetches for the rest, completing on whichever thread finishes last or
+     * at {@code deadlineNanos}, whichever comes first.
+     */
+    private Future<Map<String, Double>> lookup(Collection<String> schemeIds, long deadlineNanos) {
+        long now = System.nanoTime();
+        Map<String, Double> result = new HashMap<>(schemeIds.size());
+        List<String> toFetch = null;
+        for (String schemeId : schemeIds) {
+            SchemeRateCache.Entry entry = cache.get(schemeId, now);
+            SchemeRateCache.State state = entry != null ? entry.state(now) : SchemeRateCache.State.MISS;
+            if (state != SchemeRateCache.State.MISS) {
+                result.put(schemeId, entry.rate);
+                if (state == SchemeRateCache.State.STALE) {
+                    // Nobody waits for a refresh, so it is not held to this lookup's deadline
+                    fetchOnce(schemeId, deadline(0));
+                }
             } else {
+                if (toFetch == null) {
+                    toFetch = new ArrayList<>();
+                }
                 toFetch.add(schemeId);
             }
         }
 
-        if (toFetch.isEmpty()) {
-            return result;
+        if (toFetch == null) {
+            return Future.succeededFuture(result);
         }
 
-        // Fetch missing in parallel
-        Map<String, CompletableFuture<Double>> futures = new HashMap<>(toFetch.size());
-        for (String schemeId : toFetch) {
-            CompletableFuture<Double> future = new CompletableFuture<>();
-            futures.put(schemeId, future);
+        List<String> fetchIds = toFetch;
+        List<Future<Double>> fetches = new ArrayList<>(fetchIds.size());
+        for (String schemeId : fetchIds) {
+            fetches.add(fetchOnce(schemeId, deadlineNanos));
+        }
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        Promise<Map<String, Double>> promise = Promise.promise();
+        long timer = vertx.setTimer(Math.max(1, remainingMs), id -> promise.tryComplete(collect(result, fetchIds, fetches)));
+        Future.all(fetches).onComplete(done -> {
+            vertx.cancelTimer(timer);
+            promise.tryComplete(collect(result, fetchIds, fetches));
+        });
+        return promise.future();
+    }
 
-            // Parse URL to extract host and port
-            webClient.getAbs(baseUrl + "/schemes/" + schemeId)
-                    .timeout(2000)
-                    .send(ar -> {
-                        if (ar.succeeded()) {
-                            HttpResponse<Buffer> resp = ar.result();
-                            if (resp.statusCode() == 200) {
-                                try {
-                                    io.vertx.core.json.JsonObject json = resp.bodyAsJsonObject();
-                                    Double accrualRate = json.getDouble("accrual_rate");
-                                    if (accrualRate != null) {
-                                        future.complete(accrualRate);
-                                        return;
-                                    }
-                                } catch (Exception e) {
-                                    // fall through to default
-                                }
-                            }
-                        }
-                        future.complete(0.02); // default fallback
-                    });
+    /** {@code result} plus each fetch's rate, or the cached or default rate for those still running. */
+    private Map<String, Double> collect(Map<String, Double> result, List<String> fetchIds, List<Future<Double>> fetches) {
+        Map<String, Double> rates = new HashMap<>(result);
+        long now = System.nanoTime();
+        for (int i = 0; i < fetchIds.size(); i++) {
+            Future<Double> fetch = fetches.get(i);
+            if (fetch.isComplete()) {
+                rates.put(fetchIds.get(i), fetch.result());
+            } else {
+                SchemeRateCache.Entry entry = cache.get(fetchIds.get(i), now);
+                rates.put(fetchIds.get(i), entry != null ? entry.rate : DEFAULT_ACCRUAL_RATE);
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * The in-flight call for {@code schemeId}, now also waited on until {@code deadlineNanos}, or a
+     * new one bounded by it if there is none. Completes with the rate it left in the cache: the
+     * answer, a kept stale answer, or the default. A call cut off by its deadline leaves the cache
+     * as it was; it is made again if a later deadline joined it meanwhile, and otherwise completes
+     * with the cached or default rate.
+     */
+    Future<Double> fetchOnce(String schemeId, long deadlineNanos) {
+        Flight flight = new Flight(deadlineNanos);
+        Flight shared;
+        while ((shared = inFlight.putIfAbsent(schemeId, flight)) != null) {
+            if (shared.join(deadlineNanos)) {
+                return shared.promise.future();
+            }
+            // Settled but not yet out of the map; whatever it learned is in the cache
+            inFlight.remove(schemeId, shared);
+        }
+        // The previous call may have finished between the cache read and the registration
+        long now = System.nanoTime();
+        SchemeRateCache.Entry entry = cache.get(schemeId, now);
+        if (entry != null && entry.state(now) == SchemeRateCache.State.FRESH) {
+            flight.settle(false, now);
+            inFlight.remove(schemeId, flight);
+            flight.promise.complete(entry.rate);
+        } else {
+            start(schemeId, flight, deadlineNanos);
+        }
+        return flight.promise.future();
+    }
+
+    /** Queues the registry call for {@code flight}, bounded by {@code deadlineNanos}, and settles it. */
+    private void start(String schemeId, Flight flight, long deadlineNanos) {
+        enqueue(schemeId, deadlineNanos).onComplete(ar -> {
+            long done = System.nanoTime();
+            double rate;
+            if (ar.succeeded()) {
+                rate = ar.result();
+                cache.putAnswer(schemeId, rate, done);
+            } else if (ar.cause() instanceof DeadlineExceeded) {
+                if (!flight.settle(true, done)) {
+                    start(schemeId, flight, flight.deadlineNanos());
+                    return;
+                }
+                SchemeRateCache.Entry cached = cache.get(schemeId, done);
+                rate = cached != null ? cached.rate : DEFAULT_ACCRUAL_RATE;
+            } else {
+                rate = cache.putFailure(schemeId, DEFAULT_ACCRUAL_RATE, done);
+            }
+            // Joiners from here on start their own call, which finds the outcome in the cache
+            flight.settle(false, done);
+            inFlight.remove(schemeId, flight);
+            flight.promise.complete(rate);
+        });
+    }
+
+    /** Adds {@code schemeId} to the next batch; the batch goes out when full or when the window ends. */
+    private Future<Double> enqueue(String schemeId, long deadlineNanos) {
+        Promise<Double> promise = Promise.promise();
+        Batch full = null;
+        boolean schedule = false;
+        synchronized (pending) {
+            if (pending.isEmpty() || deadlineNanos - pendingDeadlineNanos > 0) {
+                pendingDeadlineNanos = deadlineNanos;
+            }
+            pending.put(schemeId, promise);
+            if (pending.size() >= batchMaxIds || batchWindowMs <= 0) {
+                full = takePending();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                schedule = true;
+            }
         }
+        if (full != null) {
+            send(full);
+        } else if (schedule) {
+            vertx.setTimer(batchWindowMs, id -> {
+                Batch batch;
+                synchronized (pending) {
+                    flushScheduled = false;
+                    batch = takePending();
+                }
+                if (!batch.promises().isEmpty()) {
+                    send(batch);
+                }
+            });
+        }
+        return promise.future();
+    }
+
+    /** Caller holds the {@link #pending} lock. */
+    private Batch takePending() {
+        Batch batch = new Batch(new LinkedHashMap<>(pending), pendingDeadlineNanos);
+        pending.clear();
+        return batch;
+    }
+
+    private void send(Batch toSend) {
+        Map<String, Promise<Double>> batch = toSend.promises();
+        long deadlineNanos = toSend.deadlineNanos();
+        if (batch.size() == 1 || !bulkSupported) {
+            batch.forEach((schemeId, promise) -> fetch(schemeId, deadlineNanos).onComplete(promise));
+            return;
+        }
+        StringBuilder ids = new StringBuilder();
+        for (String schemeId : batch.keySet()) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(URLEncoder.encode(schemeId, StandardCharsets.UTF_8));
+        }
+        call(baseUrl + "/schemes?ids=" + ids, deadlineNanos).onComplete(ar -> {
+            if (ar.failed()) {
+                batch.values().forEach(promise -> promise.fail(ar.cause()));
+                return;
+            }
+            HttpResponse<Buffer> resp = ar.result();
+            int status = resp.statusCode();
+            if (status == 404 || status == 405 || status == 501) {
+                bulkSupported = false;
+                batch.forEach((schemeId, promise) -> fetch(schemeId, deadlineNanos).onComplete(promise));
+                return;
+            }
+            Map<String, Double> rates = new HashMap<>(batch.size());
+            if (status == 200) {
+                try {
+                    JsonArray schemes = resp.bodyAsJsonObject().getJsonArray("schemes");
+                    for (int i = 0; schemes != null && i < schemes.size(); i++) {
+                        JsonObject scheme = schemes.getJsonObject(i);
+                        Double accrualRate = scheme.getDouble("accrual_rate");
+                        if (accrualRate != null) {
+                            rates.put(scheme.getString("scheme_id"), accrualRate);
+                        }
+                    }
+                } catch (Exception e) {
+                    // every scheme in the batch fails below
+                }
+            }
+            batch.forEach((schemeId, promise) -> {
+                Double rate = rates.get(schemeId);
+                if (rate != null) {
+                    promise.complete(rate);
+                } else {
+                    promise.fail("No accrual_rate for " + schemeId + " in bulk response (" + status + ")");
+                }
+            });
+        });
+    }
 
-        // Wait for all futures
-        for (Map.Entry<String, CompletableFuture<Double>> entry : futures.entrySet()) {
+    /** The registry's rate for {@code schemeId}; fails on any error, non-200 or missing field. */
+    private Future<Double> fetch(String schemeId, long deadlineNanos) {
+        Promise<Double> promise = Promise.promise();
+        // A path segment, where '+' is not a space
+        String segment = URLEncoder.encode(schemeId, StandardCharsets.UTF_8).replace("+", "%20");
+        call(baseUrl + "/schemes/" + segment, deadlineNanos).onComplete(ar -> {
+            if (ar.failed()) {
+                promise.fail(ar.cause());
+                return;
+            }
+            HttpResponse<Buffer> resp = ar.result();
+            if (resp.statusCode() != 200) {
+                promise.fail("Scheme registry returned " + resp.statusCode() + " for " + schemeId);
+                return;
+            }
             try {
-                double rate = entry.getValue().get(2, TimeUnit.SECONDS);
-                cache.put(entry.getKey(), rate);
-                result.put(entry.getKey(), rate);
+                Double accrualRate = resp.bodyAsJsonObject().getDouble("accrual_rate");
+                if (accrualRate != null) {
+                    promise.complete(accrualRate);
+                } else {
+                    promise.fail("No accrual_rate for " + schemeId);
+                }
             } catch (Exception e) {
-                result.put(entry.getKey(), 0.02);
+                promise.fail(e);
             }
+        });
+        return promise.future();
+    }
+
+    /**
+     * One GET to the registry, hedged with an identical second GET if the first is still running
+     * after the recent latency percentile. Each attempt times out after {@link #TIMEOUT_MS} without
+     * data, and the call as a whole at {@code deadlineNanos}: the client's timeout only bounds the
+     * gaps between bytes, which a body trickling in never exceeds. The first {@link #answered}
+     * response wins. The call as a whole, hedge included, counts once against the
+     * {@link CircuitBreaker}: a failure if every attempt got a 5xx or a transport error, nothing if
+     * it was only cut off by the deadline. While the breaker is open the call fails at once.
+     */
+    private Future<HttpResponse<Buffer>> call(String url, long deadlineNanos) {
+        if (deadlineNanos - System.nanoTime() <= 0) {
+            return Future.failedFuture(DeadlineExceeded.INSTANCE);
+        }
+        if (!breaker.allowRequest(System.nanoTime())) {
+            return Future.failedFuture("Scheme registry circuit open");
         }
+        Promise<HttpResponse<Buffer>> winner = Promise.promise();
+        AtomicInteger running = new AtomicInteger(1);
+        long hedgeDelayNanos = latencies.hedgeDelayNanos();
+        long hedgeTimer = -1;
+        if (hedgeDelayNanos > 0 && deadlineNanos - System.nanoTime() > hedgeDelayNanos) {
+            // Already admitted by the breaker: the hedge is part of the same call
+            hedgeTimer = vertx.setTimer(Math.max(1, TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos)), id -> {
+                if (!winner.future().isComplete()) {
+                    running.incrementAndGet();
+                    attempt(url, deadlineNanos, winner, running);
+                }
+            });
+        }
+        attempt(url, deadlineNanos, winner, running);
+        long deadlineTimer = vertx.setTimer(ceilMillis(deadlineNanos - System.nanoTime()),
+                id -> winner.tryFail(DeadlineExceeded.INSTANCE));
+        long timer = hedgeTimer;
+        winner.future().onComplete(ar -> {
+            vertx.cancelTimer(deadlineTimer);
+            if (timer != -1) {
+                vertx.cancelTimer(timer);
+            }
+            if (ar.succeeded() && answered(ar.result())) {
+                breaker.onSuccess();
+            } else if (ar.cause() instanceof DeadlineExceeded) {
+                breaker.onAbandoned();
+            } else {
+                breaker.onFailure(System.nanoTime());
+            }
+        });
+        return winner.future();
+    }
 
-        return result;
+    private void attempt(String url, long deadlineNanos, Promise<HttpResponse<Buffer>> winner, AtomicInteger running) {
+        long start = System.nanoTime();
+        webClient.getAbs(url)
+                .timeout(Math.min(TIMEOUT_MS, ceilMillis(deadlineNanos - start)))
+                .send(ar -> {
+                    long now = System.nanoTime();
+                    if (ar.succeeded() && answered(ar.result())) {
+                        latencies.record(now - start);
+                        winner.tryComplete(ar.result());
+                    } else if (running.decrementAndGet() == 0) {
+                        // Every attempt failed; the other one, if any, could still have answered
+                        if (ar.succeeded()) {
+                            winner.tryComplete(ar.result());
+                        } else if (now - deadlineNanos >= 0) {
+                            winner.tryFail(DeadlineExceeded.INSTANCE);
+                        } else {
+                            winner.tryFail(ar.cause());
+                        }
+                    }
+                });
+    }
+
+    /** At least 1, and rounded up so a timer set for it never fires before the instant it stands for. */
+    private static long ceilMillis(long nanos) {
+        return Math.max(1, (nanos + 999_999) / 1_000_000);
+    }
+
+    /**
+     * A 2xx-4xx, or a 501 from a registry without the bulk endpoint: the registry is up and has
+     * answered, so the response neither fails the call nor is worth hedging.
+     */
+    private static boolean answered(HttpResponse<Buffer> resp) {
+        return resp.statusCode() < 500 || resp.statusCode() == 501;
+    }
+
+    /** The fetches of one scheme sharing a registry call, and when the longest-waiting of them gives up. */
+    private static final class Flight {
+        final Promise<Double> promise = Promise.promise();
+        private long deadlineNanos;
+        private boolean settled;
+
+        Flight(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /** Waits on this call until {@code deadlineNanos} too; false once it has settled. */
+        synchronized boolean join(long deadlineNanos) {
+            if (settled) {
+                return false;
+            }
+            if (deadlineNanos - this.deadlineNanos > 0) {
+                this.deadlineNanos = deadlineNanos;
+            }
+            return true;
+        }
+
+        /** Ends the call; false, leaving it open, if it was {@code cutOff} while a deadline is still ahead. */
+        synchronized boolean settle(boolean cutOff, long now) {
+            if (cutOff && deadlineNanos - now > 0) {
+                return false;
+            }
+            settled = true;
+            return true;
+        }
+
+        synchronized long deadlineNanos() {
+            return deadlineNanos;
+        }
+    }
+
+    /** Fetches waiting for one registry call, and when the longest-waiting of their lookups gives up. */
+    private record Batch(Map<String, Promise<Double>> promises, long deadlineNanos) {}
+
+    /** A registry call cut off by its lookups' deadline rather than failed by the registry. */
+    private static final class DeadlineExceeded extends RuntimeException {
+        static final DeadlineExceeded INSTANCE = new DeadlineExceeded();
+
+        private DeadlineExceeded() {
+            super("Scheme lookup deadline reached", null, false, false);
+        }
     }
 }
@@ -0,0 +1,252 @@
+package com.pension.engine.scheme;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@code stub-registry <config.json> [--port N]}: a local stand-in for {@code SCHEME_REGISTRY_URL}.
+ * Serves {@code GET /schemes/{id}} and, unless {@code "bulk": false}, {@code GET /schemes?ids=a,b}
+ * from a config file:
+ *
+ * <pre>
+ * {
+ *   "bulk": true,
+ *   "default_accrual_rate": 0.02,
+ *   "schemes": { "SCHEME-A": 0.02, "SCHEME-B": 0.0175 },
+ *
+ *   "seed": 42,
+ *   "latency": { "distribution": "lognormal", "median_ms": 20, "sigma": 0.8 },
+ *   "error_rate": 0.01,
+ *   "timeout_rate": 0.001,
+ *   "slow_drip": { "rate": 0.005, "byte_delay_ms": 100 }
+ * }
+ * </pre>
+ *
+ * Schemes not listed get {@code default_accrual_rate}, or a 404 without one. With bulk off the
+ * bulk endpoint answers 404, which makes {@link SchemeRegistryClient} fall back to per-id calls.
+ *
+ * <p>The rest injects faults, drawn per request from a generator seeded with {@code seed} so runs
+ * repeat. Every answer is delayed by the latency distribution: {@code fixed} ({@code ms}),
+ * {@code uniform} ({@code min_ms}, {@code max_ms}), {@code exponential} ({@code mean_ms}) or
+ * {@code lognormal} ({@code median_ms}, {@code sigma}). A {@code timeout_rate} share of requests
+ * is never answered, an {@code error_rate} share gets a 500, and a {@code slow_drip} share sends
+ * its body one byte every {@code byte_delay_ms}.
+ */
+public final class StubSchemeRegistry {
+
+    private final boolean bulk;
+    private final Double defaultRate;
+    private final Map<String, Double> rates;
+    private final Faults faults;
+    private Vertx vertx;
+
+    StubSchemeRegistry(boolean bulk, Double defaultRate, Map<String, Double> rates, Faults faults) {
+        this.bulk = bulk;
+        this.defaultRate = defaultRate;
+        this.rates = rates;
+        this.faults = faults;
+    }
+
+    /** Injected latency and failures; an empty config answers everything at once. */
+    record Faults(Random random, String distribution, double a, double b,
+                  double errorRate, double timeoutRate, double slowDripRate, long byteDelayMs) {
+
+        static Faults from(JsonObject config) {
+            JsonObject latency = config.getJsonObject("latency", new JsonObject());
+            String distribution = latency.getString("distribution", "fixed");
+            double a;
+            double b = 0;
+            switch (distribution) {
+                case "fixed": a = latency.getDouble("ms", 0.0); break;
+                case "uniform":
+                    a = latency.getDouble("min_ms", 0.0);
+                    b = latency.getDouble("max_ms", a);
+                    break;
+                case "exponential": a = latency.getDouble("mean_ms", 0.0); break;
+                case "lognormal":
+                    a = latency.getDouble("median_ms", 0.0);
+                    b = latency.getDouble("sigma", 0.5);
+                    break;
+                default: throw new IllegalArgumentException("Unknown latency distribution: " + distribution);
+            }
+            JsonObject slowDrip = config.getJsonObject("slow_drip", new JsonObject());
+            Long seed = config.getLong("seed");
+            return new Faults(seed != null ? new Random(seed) : new Random(), distribution, a, b,
+                    config.getDouble("error_rate", 0.0), config.getDouble("timeout_rate", 0.0),
+                    slowDrip.getDouble("rate", 0.0), slowDrip.getLong("byte_delay_ms", 100L));
+        }
+
+        long latencyMs() {
+            double ms;
+            switch (distribution) {
+                case "uniform": ms = a + (b - a) * random.nextDouble(); break;
+                case "exponential": ms = -a * Math.log(1 - random.nextDouble()); break;
+                case "lognormal": ms = a * Math.exp(b * random.nextGaussian()); break;
+                default: ms = a; break;
+            }
+            return Math.round(ms);
+        }
+    }
+
+    static StubSchemeRegistry load(Path config) throws IOException {
+        return from(new JsonObject(Files.readString(config)));
+    }
+
+    /** A registry configured as in the class description. */
+    static StubSchemeRegistry from(JsonObject root) {
+        Map<String, Double> rates = new HashMap<>();
+        JsonObject schemes = root.getJsonObject("schemes", new JsonObject());
+        for (String schemeId : schemes.fieldNames()) {
+            rates.put(schemeId, schemes.getDouble(schemeId));
+        }
+        return new StubSchemeRegistry(root.getBoolean("bulk", true), root.getDouble("default_accrual_rate"), rates,
+                Faults.from(root));
+    }
+
+    /** Entry point from {@code Main}; {@code args} excludes the {@code stub-registry} word. */
+    public static void run(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: stub-registry <config.json> [--port N]");
+            System.exit(2);
+        }
+        int port = 8081;
+        for (int i = 1; i < args.length; i++) {
+            if ("--port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(2);
+            }
+        }
+
+        StubSchemeRegistry registry;
+        try {
+            registry = load(Paths.get(args[0]));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cannot read " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        int listenPort = port;
+        Vertx vertx = Vertx.vertx();
+        vertx.createHttpServer()
+                .requestHandler(registry.handler(vertx))
+                .listen(listenPort)
+                .onSuccess(s -> System.out.println("Stub scheme registry started on port " + listenPort
+                        + " (" + registry.rates.size() + " schemes, bulk " + (registry.bulk ? "on" : "off") + ")"))
+                .onFailure(err -> {
+                    System.err.println("Failed to start stub scheme registry: " + err.getMessage());
+                    System.exit(1);
+                });
+    }
+
+    /** Answers requests on {@code vertx}, whose timers delay and drip the answers. */
+    Handler<HttpServerRequest> handler(Vertx vertx) {
+        this.vertx = vertx;
+        return this::handle;
+    }
+
+    private void handle(HttpServerRequest req) {
+        String path = req.path();
+        if (req.method() != HttpMethod.GET) {
+            respond(req, 405, null);
+        } else if ("/schemes".equals(path)) {
+            handleBulk(req);
+        } else if (path.startsWith("/schemes/") && path.length() > "/schemes/".length()) {
+            String schemeId = URLDecoder.decode(path.substring("/schemes/".length()), StandardCharsets.UTF_8);
+            Double rate = rateOf(schemeId);
+            respond(req, rate == null ? 404 : 200, rate == null ? null : scheme(schemeId, rate));
+        } else {
+            respond(req, 404, null);
+        }
+    }
+
+    private void handleBulk(HttpServerRequest req) {
+        String ids = req.getParam("ids");
+        if (!bulk) {
+            respond(req, 404, null);
+            return;
+        }
+        if (ids == null) {
+            respond(req, 400, null);
+            return;
+        }
+        JsonArray schemes = new JsonArray();
+        for (String schemeId : ids.split(",")) {
+            Double rate = rateOf(schemeId);
+            if (rate != null) {
+                schemes.add(scheme(schemeId, rate));
+            }
+        }
+        respond(req, 200, new JsonObject().put("schemes", schemes));
+    }
+
+    private Double rateOf(String schemeId) {
+        Double rate = rates.get(schemeId);
+        return rate != null ? rate : defaultRate;
+    }
+
+    private static JsonObject scheme(String schemeId, double rate) {
+        return new JsonObject().put("scheme_id", schemeId).put("accrual_rate", rate);
+    }
+
+    /** Sends {@code status} and {@code body} after the injected latency, unless a fault takes over. */
+    private void respond(HttpServerRequest req, int status, JsonObject body) {
+        Random random = faults.random();
+        double draw = random.nextDouble();
+        if (draw < faults.timeoutRate()) {
+            return; // never answered; the client's timeout has to deal with it
+        }
+        boolean error = draw < faults.timeoutRate() + faults.errorRate();
+        boolean slowDrip = !error && body != null && random.nextDouble() < faults.slowDripRate();
+        long delay = faults.latencyMs();
+        Runnable send = () -> {
+            HttpServerResponse resp = req.response();
+            if (error) {
+                resp.setStatusCode(500).end();
+            } else if (body == null) {
+                resp.setStatusCode(status).end();
+            } else if (slowDrip) {
+                byte[] bytes = body.encode().getBytes(StandardCharsets.UTF_8);
+                resp.setStatusCode(status).setChunked(true).putHeader("Content-Type", "application/json");
+                drip(resp, bytes, 0);
+            } else {
+                resp.setStatusCode(status).putHeader("Content-Type", "application/json").end(body.encode());
+            }
+        };
+        if (delay > 0) {
+            vertx.setTimer(delay, id -> send.run());
+        } else {
+            send.run();
+        }
+    }
+
+    private void drip(HttpServerResponse resp, byte[] bytes, int next) {
+        if (resp.closed()) {
+            return;
+        }
+        if (next == bytes.length) {
+            resp.end();
+            return;
+        }
+        resp.write(Buffer.buffer(new byte[] {bytes[next]}));
+        vertx.setTimer(Math.max(1, faults.byteDelayMs()), id -> drip(resp, bytes, next + 1));
+    }
+}
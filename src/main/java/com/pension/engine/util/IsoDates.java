@@ -0,0 +1,141 @@
+package com.pension.engine.util;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * ISO-8601 calendar dates ({@code yyyy-MM-dd}) as {@code int} epoch days, the same numbering as
+ * {@link LocalDate#toEpochDay()}. The common ten-character form is parsed and validated in place
+ * with no allocation; anything else goes through {@link LocalDate#parse} so the accepted inputs
+ * are exactly those of {@code LocalDate.parse}.
+ */
+public final class IsoDates {
+
+    /** Returned by {@link #parseEpochDay} for text that is not a valid ISO date. */
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    private IsoDates() {}
+
+    /** Epoch day of {@code text}, or {@link #INVALID} if it is null or not a valid ISO date. */
+    public static int parseEpochDay(String text) {
+        if (text == null) {
+            return INVALID;
+        }
+        if (text.length() == 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+                return INVALID;
+            }
+            return epochDay(year, month, day);
+        }
+        try {
+            return (int) LocalDate.parse(text).toEpochDay();
+        } catch (DateTimeException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * For values parsed at ingest: returns {@code epochDay} unless it is {@link #INVALID}, in which
+     * case {@code text} is handed to {@link LocalDate#parse} to fail exactly as the handlers did
+     * when they parsed on the spot.
+     */
+    public static int require(int epochDay, String text) {
+        if (epochDay == INVALID) {
+            return (int) LocalDate.parse(text).toEpochDay();
+        }
+        return epochDay;
+    }
+
+    /** Days from 1970-01-01 to the given proleptic Gregorian date. */
+    public static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /** Same result as {@code LocalDate.ofEpochDay(epochDay).plusMonths(months).toEpochDay()}. */
+    public static int plusMonths(int epochDay, int months) {
+        int civil = civil(epochDay);
+        int year = civil >> 9;
+        int month = (civil >> 5) & 0xF;
+        int day = civil & 0x1F;
+        long total = year * 12L + (month - 1) + months;
+        int newYear = (int) Math.floorDiv(total, 12);
+        int newMonth = (int) Math.floorMod(total, 12) + 1;
+        return epochDay(newYear, newMonth, Math.min(day, lengthOfMonth(newYear, newMonth)));
+    }
+
+    /** {@code yyyy-MM-dd}, identical to {@code LocalDate.ofEpochDay(epochDay).toString()}. */
+    public static String toIsoString(int epochDay) {
+        int civil = civil(epochDay);
+        int year = civil >> 9;
+        if (year < 0 || year > 9999) {
+            return LocalDate.ofEpochDay(epochDay).toString();
+        }
+        int month = (civil >> 5) & 0xF;
+        int day = civil & 0x1F;
+        char[] buf = new char[10];
+        buf[0] = (char) ('0' + year / 1000);
+        buf[1] = (char) ('0' + year / 100 % 10);
+        buf[2] = (char) ('0' + year / 10 % 10);
+        buf[3] = (char) ('0' + year % 10);
+        buf[4] = '-';
+        buf[5] = (char) ('0' + month / 10);
+        buf[6] = (char) ('0' + month % 10);
+        buf[7] = '-';
+        buf[8] = (char) ('0' + day / 10);
+        buf[9] = (char) ('0' + day % 10);
+        return new String(buf);
+    }
+
+    public static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /** Year, month and day packed as {@code year << 9 | month << 5 | day}. */
+    private static int civil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 9 | month << 5 | day;
+    }
+
+    /** Non-negative value of the ASCII digits in {@code [from, to)}, or -1 if any is not a digit. */
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int d = text.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+}
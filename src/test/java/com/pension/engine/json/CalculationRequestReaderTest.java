@@ -0,0 +1,114 @@
+package com.pension.engine.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.pension.engine.model.request.AddPolicyProperties;
+import com.pension.engine.model.request.CalculationRequest;
+import com.pension.engine.model.request.CreateDossierProperties;
+import com.pension.engine.model.request.Mutation;
+import com.pension.engine.mutation.MutationRegistry;
+import com.pension.engine.util.IsoDates;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CalculationRequestReaderTest {
+
+    private static final String ADD_POLICY_PROPERTIES =
+            "{ \"scheme_id\" : \"SCHEME-A\",\n  \"employment_start_date\": \"2000-01-01\", \"salary\": 5.0E4, "
+                    + "\"part_time_factor\": 0.80 }";
+
+    private final CalculationRequestReader reader =
+            new CalculationRequestReader(new JsonFactory(), new MutationRegistry());
+
+    @Test
+    void readsALineFromTheMiddleOfAChunk() throws IOException {
+        String previous = "{\"tenant_id\":\"t\",\"calculation_instructions\":{\"mutations\":[]}}\n";
+        String line = request(mutation("add_policy", ADD_POLICY_PROPERTIES));
+        byte[] chunk = (previous + line + "\n" + previous).getBytes(StandardCharsets.UTF_8);
+        int offset = previous.getBytes(StandardCharsets.UTF_8).length;
+
+        Mutation mutation = onlyMutation(reader.read(chunk, offset, line.getBytes(StandardCharsets.UTF_8).length));
+
+        assertEquals(ADD_POLICY_PROPERTIES, echoed(mutation));
+        assertEquals(new AddPolicyProperties("SCHEME-A", "2000-01-01", IsoDates.parseEpochDay("2000-01-01"),
+                50_000, 0.8), mutation.getProperties());
+    }
+
+    @Test
+    void bindsPropertiesThatArriveBeforeTheName() throws IOException {
+        String body = request("{\"mutation_properties\": " + ADD_POLICY_PROPERTIES + ", \"mutation_id\": \"m1\", "
+                + "\"mutation_definition_name\": \"add_policy\", \"mutation_type\": \"DOSSIER\", "
+                + "\"actual_at\": \"2020-01-01\"}");
+
+        Mutation mutation = onlyMutation(reader.read(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("add_policy", mutation.getMutationDefinitionName());
+        assertEquals(ADD_POLICY_PROPERTIES, echoed(mutation));
+        assertEquals(new AddPolicyProperties("SCHEME-A", "2000-01-01", IsoDates.parseEpochDay("2000-01-01"),
+                50_000, 0.8), mutation.getProperties());
+    }
+
+    @Test
+    void echoesAStringOrNullInPlaceOfTheProperties() throws IOException {
+        AddPolicyProperties empty = new AddPolicyProperties("", "", IsoDates.INVALID, 0, 0);
+        for (String value : List.of("\"not an object\"", "\"esc\\\"aped \\u00e9\"", "null")) {
+            Mutation after = onlyMutation(reader.read(bytes(request(mutation("add_policy", value)))));
+            assertEquals(value, echoed(after), value);
+            assertEquals(empty, after.getProperties(), value);
+
+            Mutation before = onlyMutation(reader.read(bytes(request("{\"mutation_properties\":" + value
+                    + ",\"mutation_definition_name\":\"add_policy\"}"))));
+            assertEquals(value, echoed(before), value);
+            assertEquals(empty, before.getProperties(), value);
+        }
+    }
+
+    @Test
+    void echoesMultiByteText() throws IOException {
+        String properties = "{\"dossier_id\":\"d-1\",\"person_id\":\"p-1\",\"name\":\"Zoë Ångström 日本 \uD83C\uDF89\","
+                + "\"birth_date\":\"1960-06-15\"}";
+        // Multi-byte text before the line and before the properties moves their byte offsets
+        String previous = "{\"tenant_id\":\"ß\"}\n";
+        String line = request("{\"mutation_id\":\"ünïcödé\",\"mutation_definition_name\":\"create_dossier\","
+                + "\"mutation_properties\":" + properties + ",\"actual_at\":\"2020-01-01\"}");
+        byte[] chunk = bytes(previous + line);
+
+        Mutation mutation = onlyMutation(reader.read(chunk, bytes(previous).length, bytes(line).length));
+
+        assertEquals(properties, echoed(mutation));
+        assertEquals("ünïcödé", mutation.getMutationId());
+        assertEquals(new CreateDossierProperties("d-1", "p-1", "Zoë Ångström 日本 \uD83C\uDF89", "1960-06-15",
+                IsoDates.parseEpochDay("1960-06-15")), mutation.getProperties());
+    }
+
+    private static String request(String mutation) {
+        return "{\"tenant_id\":\"t\",\"calculation_instructions\":{\"mutations\":[" + mutation + "]}}";
+    }
+
+    private static String mutation(String name, String properties) {
+        return "{\"mutation_id\":\"m1\",\"mutation_definition_name\":\"" + name + "\",\"mutation_type\":\"DOSSIER\","
+                + "\"actual_at\":\"2020-01-01\",\"mutation_properties\":" + properties + "}";
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Mutation onlyMutation(CalculationRequest request) {
+        List<Mutation> mutations = request.getCalculationInstructions().getMutations();
+        assertEquals(1, mutations.size());
+        return mutations.get(0);
+    }
+
+    private static String echoed(Mutation mutation) {
+        JsonNode node = mutation.getMutationProperties();
+        return (String) ((RawValue) ((POJONode) node).getPojo()).rawValue();
+    }
+}
@@ -0,0 +1,98 @@
+package com.pension.engine.json;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pension.engine.CalculationEngine;
+import com.pension.engine.model.request.CalculationRequest;
+import com.pension.engine.model.response.CalculationResponse;
+import com.pension.engine.mutation.MutationRegistry;
+import com.pension.engine.patch.PatchMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalculationResponseWriterTest {
+
+    // Main.MAPPER's settings; its Blackbird module changes how fields are accessed, not the output
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.ALWAYS)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final MutationRegistry registry = new MutationRegistry();
+    private final CalculationEngine engine = new CalculationEngine(registry, null);
+    private final CalculationRequestReader reader = new CalculationRequestReader(MAPPER.getFactory(), registry);
+    private final CalculationResponseWriter writer = new CalculationResponseWriter(MAPPER.getFactory());
+
+    @Test
+    void writesWhatDatabindWritesForEveryTestCaseAndPatchMode() throws IOException {
+        List<Path> cases = testCases();
+        assertFalse(cases.isEmpty(), "no test cases");
+        boolean nullPension = false;
+        boolean nullProjections = false;
+        boolean projections = false;
+
+        for (Path file : cases) {
+            byte[] request = MAPPER.writeValueAsBytes(MAPPER.readTree(file.toFile()).get("request"));
+            for (PatchMode patchMode : PatchMode.values()) {
+                String label = file.getFileName() + " " + patchMode;
+                // Streamed requests echo mutation_properties as raw text, databind-read ones as a tree
+                for (CalculationRequest parsed : List.of(reader.read(request),
+                        MAPPER.readValue(request, CalculationRequest.class))) {
+                    parsed.setPatchMode(patchMode);
+                    CalculationResponse response = engine.process(parsed);
+
+                    String expected = new String(MAPPER.writeValueAsBytes(response), StandardCharsets.UTF_8);
+                    assertEquals(expected, written(response), label);
+                    assertEquals(expected, writtenViaResult(response), label);
+
+                    nullPension |= expected.contains("\"attainable_pension\":null");
+                    nullProjections |= expected.contains("\"projections\":null");
+                    projections |= expected.contains("\"projections\":[{");
+                }
+            }
+        }
+
+        assertTrue(nullPension, "no case with a null attainable_pension");
+        assertTrue(nullProjections, "no case with null projections");
+        assertTrue(projections, "no case with projections");
+    }
+
+    private String written(CalculationResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(response, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** The memoized form: the result written once, then spliced after fresh metadata. */
+    private String writtenViaResult(CalculationResponse response) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        writer.writeResult(response.getCalculationResult(), result);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(response.getCalculationMetadata(), new ByteArrayInputStream(result.toByteArray()), out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<Path> testCases() throws IOException {
+        List<Path> cases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get("test-cases"), "*.json")) {
+            files.forEach(cases::add);
+        }
+        cases.sort(null);
+        return cases;
+    }
+}
@@ -0,0 +1,114 @@
+package com.pension.engine.kernel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelKernelsTest {
+
+    /** Splits every loop of at least 128 elements, whatever the calibration says. */
+    private static final ParallelKernels ALWAYS_SPLIT = new ParallelKernels(4, 1);
+
+    @Test
+    void splitLoopsGiveBitIdenticalResults() {
+        Random random = new Random(7);
+        for (int size : new int[] {128, 129, 1000, 4096, 10_001}) {
+            int[] startDays = new int[size];
+            double[] salaries = new double[size];
+            double[] partTimeFactors = new double[size];
+            for (int i = 0; i < size; i++) {
+                startDays[i] = 5_000 + random.nextInt(25_000);
+                salaries[i] = random.nextDouble() * 150_000;
+                partTimeFactors[i] = random.nextDouble();
+            }
+            long toDay = 20_000;
+
+            double[] sequential = new double[size];
+            ParallelKernels.SEQUENTIAL.forRange(ParallelKernels.Site.RETIREMENT, size, 1,
+                    (from, to) -> yearsOfService(startDays, toDay, sequential, from, to));
+            double[] parallel = new double[size];
+            ALWAYS_SPLIT.forRange(ParallelKernels.Site.RETIREMENT, size, 1,
+                    (from, to) -> yearsOfService(startDays, toDay, parallel, from, to));
+
+            assertArrayEquals(sequential, parallel, "years of service, size " + size);
+            // The reduction over them stays sequential in the caller, so it matches bit for bit too
+            assertEquals(weightedSum(salaries, partTimeFactors, sequential),
+                    weightedSum(salaries, partTimeFactors, parallel), "weighted sum, size " + size);
+        }
+    }
+
+    @Test
+    void splitsOnAlignedChunksCoveringTheRangeOnce() {
+        int size = 10_000;
+        List<int[]> ranges = new ArrayList<>();
+        ALWAYS_SPLIT.forRange(ParallelKernels.Site.PROJECTION, size, 1, (from, to) -> {
+            synchronized (ranges) {
+                ranges.add(new int[] {from, to});
+            }
+        });
+
+        assertTrue(ranges.size() > 1, "split into " + ranges.size() + " ranges");
+        ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int next = 0;
+        for (int[] range : ranges) {
+            assertEquals(next, range[0]);
+            assertEquals(0, range[0] % 64, "range start " + range[0]);
+            assertTrue(range[1] > range[0]);
+            next = range[1];
+        }
+        assertEquals(size, next);
+    }
+
+    @Test
+    void runsSmallLoopsInlineOnTheCaller() {
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = new ArrayList<>();
+        ALWAYS_SPLIT.forRange(ParallelKernels.Site.INDEXATION, 127, 1000, (from, to) -> {
+            assertEquals(0, from);
+            assertEquals(127, to);
+            threads.add(Thread.currentThread());
+        });
+        assertEquals(List.of(caller), threads);
+
+        ParallelKernels.SEQUENTIAL.forRange(ParallelKernels.Site.INDEXATION, 0, 1,
+                (from, to) -> threads.add(Thread.currentThread()));
+        assertEquals(1, threads.size());
+        assertSame(caller, threads.get(0));
+    }
+
+    @Test
+    void fixedThresholdDecidesOnUnits() {
+        ParallelKernels kernels = new ParallelKernels(2, 1000);
+        assertTrue(kernels.isParallel());
+        assertTrue(kernels.shouldSplit(ParallelKernels.Site.PROJECTION, 200, 5));
+        assertFalse(kernels.shouldSplit(ParallelKernels.Site.PROJECTION, 200, 4));
+        // Too few elements to give every task a whole aligned chunk
+        assertFalse(kernels.shouldSplit(ParallelKernels.Site.PROJECTION, 127, 1_000_000));
+
+        assertFalse(ParallelKernels.SEQUENTIAL.isParallel());
+        assertFalse(ParallelKernels.SEQUENTIAL.shouldSplit(ParallelKernels.Site.PROJECTION, 1_000_000, 1_000_000));
+    }
+
+    private static void yearsOfService(int[] startDays, long toDay, double[] years, int from, int to) {
+        for (int i = from; i < to; i++) {
+            long daysDiff = toDay - startDays[i];
+            years[i] = daysDiff < 0 ? 0 : daysDiff / 365.25;
+        }
+    }
+
+    private static double weightedSum(double[] salaries, double[] partTimeFactors, double[] years) {
+        double sum = 0;
+        for (int i = 0; i < years.length; i++) {
+            sum += salaries[i] * partTimeFactors[i] * years[i];
+        }
+        return sum;
+    }
+}
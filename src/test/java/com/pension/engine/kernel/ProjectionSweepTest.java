@@ -0,0 +1,94 @@
+package com.pension.engine.kernel;
+
+import com.pension.engine.util.IsoDates;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProjectionSweepTest {
+
+    private static final int GRID_START = IsoDates.epochDay(2025, 1, 31);
+
+    @Test
+    void matchesPerDateLoopOnRandomDossiers() {
+        Random random = new Random(42);
+        int[] policyCounts = {1, 2, 3, 10, 100, 1000};
+        for (int policyCount : policyCounts) {
+            for (int round = 0; round < 20; round++) {
+                int[] startDays = new int[policyCount];
+                double[] salaries = new double[policyCount];
+                for (int i = 0; i < policyCount; i++) {
+                    // Employment from 40 years before the grid to 10 years into it
+                    startDays[i] = GRID_START - 14_610 + random.nextInt(18_263);
+                    salaries[i] = random.nextInt(4) == 0 ? 0 : 20_000 + random.nextDouble() * 100_000;
+                }
+                int[] dates = monthlyGrid(1 + random.nextInt(12), 1 + random.nextInt(480));
+                assertMatches(startDays, salaries, policyCount, dates);
+            }
+        }
+    }
+
+    @Test
+    void isZeroUntilSomePolicyHasService() {
+        int[] startDays = {GRID_START + 100, GRID_START + 40};
+        double[] salaries = {50_000, 30_000};
+        int[] dates = {GRID_START, GRID_START + 40, GRID_START + 41, GRID_START + 100, GRID_START + 200};
+
+        double[] averages = ProjectionSweep.weightedAverages(startDays, salaries, 2, dates);
+
+        assertEquals(0.0, averages[0]);
+        // A policy starting on the date itself has no service yet
+        assertEquals(0.0, averages[1]);
+        assertEquals(30_000.0, averages[2]);
+        assertMatches(startDays, salaries, 2, dates);
+    }
+
+    @Test
+    void handlesSharedStartDaysAndIgnoresRowsPastPolicyCount() {
+        int[] startDays = {GRID_START - 365, GRID_START - 365, GRID_START - 730, GRID_START - 10_000};
+        double[] salaries = {40_000, 60_000, 10_000, 1e9};
+        int[] dates = monthlyGrid(6, 20);
+        assertMatches(startDays, salaries, 3, dates);
+    }
+
+    @Test
+    void returnsNothingForAnEmptyGrid() {
+        assertEquals(0, ProjectionSweep.weightedAverages(new int[] {GRID_START}, new double[] {1}, 1, new int[0]).length);
+    }
+
+    private static int[] monthlyGrid(int intervalMonths, int count) {
+        int[] dates = new int[count];
+        for (int n = 0, d = GRID_START; n < count; n++, d = IsoDates.plusMonths(d, intervalMonths)) {
+            dates[n] = d;
+        }
+        return dates;
+    }
+
+    /** The sweep is algebraically equal to the per-date loop it replaced, so only rounding may differ. */
+    private static void assertMatches(int[] startDays, double[] salaries, int policyCount, int[] dates) {
+        double[] averages = ProjectionSweep.weightedAverages(startDays, salaries, policyCount, dates);
+        assertEquals(dates.length, averages.length);
+        for (int n = 0; n < dates.length; n++) {
+            double expected = perDateAverage(startDays, salaries, policyCount, dates[n]);
+            assertEquals(expected, averages[n], Math.abs(expected) * 1e-9, "date " + IsoDates.toIsoString(dates[n]));
+            if (expected == 0) {
+                assertEquals(0.0, averages[n]);
+            }
+        }
+    }
+
+    /** The loop {@code ProjectFutureBenefitsHandler} ran for every projection date before the sweep. */
+    private static double perDateAverage(int[] startDays, double[] salaries, int policyCount, long projDay) {
+        double totalYears = 0;
+        double weightedSum = 0;
+        for (int i = 0; i < policyCount; i++) {
+            long daysDiff = projDay - startDays[i];
+            double years = daysDiff >= 0 ? daysDiff / 365.25 : 0;
+            totalYears += years;
+            weightedSum += salaries[i] * years;
+        }
+        return totalYears > 0 ? weightedSum / totalYears : 0;
+    }
+}
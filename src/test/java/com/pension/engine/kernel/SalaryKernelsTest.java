@@ -0,0 +1,142 @@
+package com.pension.engine.kernel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Runs with {@code --add-modules jdk.incubator.vector} (see the test task in the build). */
+class SalaryKernelsTest {
+
+    private static final SalaryKernels SCALAR = ScalarSalaryKernels.INSTANCE;
+    private static final SalaryKernels VECTOR = vector();
+    private static final ParallelKernels ALWAYS_SPLIT = new ParallelKernels(4, 1);
+
+    /** Sizes around every lane count a platform may have, plus some that split across threads. */
+    private static final int[] SIZES = {1, 2, 3, 4, 5, 7, 8, 9, 15, 16, 17, 63, 64, 65, 1000, 4099};
+
+    @Test
+    void vectorMapsMatchScalarBitForBit() {
+        Random random = new Random(11);
+        for (int size : SIZES) {
+            Columns c = new Columns(random, size);
+            // Odd offsets, so lanes start away from index 0
+            int from = Math.min(size - 1, 3);
+            int to = Math.max(from + 1, size - 2);
+
+            double[] expected = new double[size];
+            double[] actual = new double[size];
+            SCALAR.yearsOfService(c.startDays, c.toDay, expected, from, to);
+            VECTOR.yearsOfService(c.startDays, c.toDay, actual, from, to);
+            assertArrayEquals(expected, actual, "yearsOfService, size " + size);
+
+            SCALAR.accruedPensions(c.weightedAvg, c.years, c.rates, c.rateIndex, expected, from, to);
+            VECTOR.accruedPensions(c.weightedAvg, c.years, c.rates, c.rateIndex, actual, from, to);
+            assertArrayEquals(expected, actual, "accruedPensions, size " + size);
+
+            SCALAR.proportionalPensions(c.annualPension, c.years, c.totalYears, expected, from, to);
+            VECTOR.proportionalPensions(c.annualPension, c.years, c.totalYears, actual, from, to);
+            assertArrayEquals(expected, actual, "proportionalPensions, size " + size);
+
+            double startDay = c.dateDays[0] + random.nextInt(400) - 200;
+            SCALAR.projectionRow(c.dateDays, c.weightedAvgs, startDay, 0.02, expected, size);
+            VECTOR.projectionRow(c.dateDays, c.weightedAvgs, startDay, 0.02, actual, size);
+            assertArrayEquals(expected, actual, "projectionRow, size " + size);
+        }
+    }
+
+    @Test
+    void splitLoopsMatchSequentialForBothKernels() {
+        Random random = new Random(13);
+        for (SalaryKernels math : new SalaryKernels[] {SCALAR, VECTOR}) {
+            for (int size : SIZES) {
+                Columns c = new Columns(random, size);
+                double[] sequential = new double[size];
+                double[] parallel = new double[size];
+                ParallelKernels.SEQUENTIAL.forRange(ParallelKernels.Site.RETIREMENT, size, 1,
+                        (from, to) -> math.yearsOfService(c.startDays, c.toDay, sequential, from, to));
+                ALWAYS_SPLIT.forRange(ParallelKernels.Site.RETIREMENT, size, 1,
+                        (from, to) -> math.yearsOfService(c.startDays, c.toDay, parallel, from, to));
+                assertArrayEquals(sequential, parallel, math.getClass().getSimpleName() + ", size " + size);
+
+                // The sum is taken after the split loop, on the caller
+                assertEquals(math.weightedSum(c.salaries, c.partTimeFactors, sequential, size),
+                        math.weightedSum(c.salaries, c.partTimeFactors, parallel, size));
+
+                ParallelKernels.SEQUENTIAL.forRange(ParallelKernels.Site.RETIREMENT, size, 1,
+                        (from, to) -> math.accruedPensions(c.weightedAvg, c.years, c.rates, c.rateIndex, sequential, from, to));
+                ALWAYS_SPLIT.forRange(ParallelKernels.Site.RETIREMENT, size, 1,
+                        (from, to) -> math.accruedPensions(c.weightedAvg, c.years, c.rates, c.rateIndex, parallel, from, to));
+                assertArrayEquals(sequential, parallel, math.getClass().getSimpleName() + ", size " + size);
+            }
+        }
+    }
+
+    /**
+     * The one documented difference: the vector sum adds lane by lane, so it may differ from the
+     * scalar sum in the last bits. It is exact below one vector's worth of elements.
+     */
+    @Test
+    void vectorWeightedSumDiffersOnlyByRounding() {
+        Random random = new Random(17);
+        for (int size : SIZES) {
+            Columns c = new Columns(random, size);
+            double expected = SCALAR.weightedSum(c.salaries, c.partTimeFactors, c.years, size);
+            double actual = VECTOR.weightedSum(c.salaries, c.partTimeFactors, c.years, size);
+            assertEquals(expected, actual, Math.abs(expected) * 1e-12, "size " + size);
+        }
+        Columns one = new Columns(random, 1);
+        assertEquals(SCALAR.weightedSum(one.salaries, one.partTimeFactors, one.years, 1),
+                VECTOR.weightedSum(one.salaries, one.partTimeFactors, one.years, 1));
+    }
+
+    private static SalaryKernels vector() {
+        try {
+            return SalaryKernels.vector();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("Vector kernels not on the test classpath", e);
+        }
+    }
+
+    private static final class Columns {
+        final int[] startDays;
+        final long toDay = 20_000;
+        final double[] salaries;
+        final double[] partTimeFactors;
+        final double[] years;
+        final double[] rates = {0.02, 0.0175, 0.025, 0.01};
+        final int[] rateIndex;
+        final double[] dateDays;
+        final double[] weightedAvgs;
+        final double weightedAvg;
+        final double annualPension;
+        final double totalYears;
+
+        Columns(Random random, int size) {
+            startDays = new int[size];
+            salaries = new double[size];
+            partTimeFactors = new double[size];
+            years = new double[size];
+            rateIndex = new int[size];
+            dateDays = new double[size];
+            weightedAvgs = new double[size];
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                // Some start after toDay, so the zero branch is taken too
+                startDays[i] = 5_000 + random.nextInt(16_000);
+                salaries[i] = random.nextDouble() * 150_000;
+                partTimeFactors[i] = random.nextDouble();
+                years[i] = random.nextDouble() * 40;
+                total += years[i];
+                rateIndex[i] = random.nextInt(rates.length);
+                dateDays[i] = 20_000 + 30 * i;
+                weightedAvgs[i] = random.nextDouble() * 100_000;
+            }
+            weightedAvg = random.nextDouble() * 100_000;
+            annualPension = random.nextDouble() * 50_000;
+            totalYears = total;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.pension.engine.model.state;
+
+import com.pension.engine.util.IsoDates;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** {@link PolicyIndex} through {@link Dossier}, against a plain scan of the policy list. */
+class PolicyIndexTest {
+
+    @Test
+    void findsPoliciesBySchemeBucket() {
+        Dossier dossier = dossier("A:2010-01-01", "B:2011-01-01", "A:2005-06-30", "C:2001-01-01", "A:2020-02-29");
+
+        assertArrayEquals(new int[] {0, 2, 4}, positions(dossier, "A", null));
+        assertArrayEquals(new int[] {1}, positions(dossier, "B", null));
+        assertArrayEquals(new int[0], positions(dossier, "unknown", null));
+        assertEquals(3, count(dossier, "A", null));
+        assertEquals(0, count(dossier, "unknown", null));
+    }
+
+    @Test
+    void findsStartDatesStrictlyBeforeTheCutOffInListOrder() {
+        // Added out of date order: the result must still be ascending positions
+        Dossier dossier = dossier("A:2010-01-01", "B:2001-01-01", "A:2005-06-30", "C:2010-01-01", "B:1999-12-31");
+
+        assertArrayEquals(new int[] {1, 2, 4}, positions(dossier, null, "2010-01-01"));
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, positions(dossier, null, "2010-01-02"));
+        assertArrayEquals(new int[0], positions(dossier, null, "1999-12-31"));
+        assertArrayEquals(new int[] {2}, positions(dossier, "A", "2010-01-01"));
+        assertArrayEquals(new int[] {4}, positions(dossier, "B", "2000-01-01"));
+        assertEquals(3, count(dossier, null, "2010-01-01"));
+        assertEquals(1, count(dossier, "A", "2010-01-01"));
+    }
+
+    @Test
+    void comparesAsStringsWhenTheCutOffIsNotADate() {
+        Dossier dossier = dossier("A:2010-01-01", "B:2001-01-01", "A:2005-06-30");
+
+        // Not a valid date, but it still sorts between the start dates as text
+        assertArrayEquals(new int[] {1, 2}, positions(dossier, null, "2009-13-45"));
+        assertArrayEquals(new int[] {2}, positions(dossier, "A", "2009-13-45"));
+        assertEquals(2, count(dossier, null, "2009-13-45"));
+    }
+
+    @Test
+    void detectsDuplicateSchemeAndStartDate() {
+        Dossier dossier = dossier("A:2010-01-01", "B:2010-01-01");
+
+        assertTrue(dossier.hasPolicy("A", "2010-01-01"));
+        assertTrue(dossier.hasPolicy("B", "2010-01-01"));
+        assertFalse(dossier.hasPolicy("A", "2010-01-02"));
+        assertFalse(dossier.hasPolicy("C", "2010-01-01"));
+
+        // A duplicate is still added, and found in both buckets
+        add(dossier, "A:2010-01-01");
+        assertArrayEquals(new int[] {0, 2}, positions(dossier, "A", null));
+        assertArrayEquals(new int[] {0, 1, 2}, positions(dossier, null, "2010-01-02"));
+    }
+
+    @Test
+    void rebuildsOnSetPolicies() {
+        Dossier source = dossier("C:2015-01-01", "A:2010-01-01");
+        Dossier dossier = dossier("A:2000-01-01", "B:2000-01-01");
+
+        dossier.setPolicies(new ArrayList<>(source.getPolicies()));
+
+        assertFalse(dossier.hasPolicy("B", "2000-01-01"));
+        assertTrue(dossier.hasPolicy("C", "2015-01-01"));
+        assertArrayEquals(new int[] {1}, positions(dossier, "A", null));
+        assertArrayEquals(new int[] {1}, positions(dossier, null, "2012-01-01"));
+        assertArrayEquals(new int[0], positions(dossier, "B", null));
+    }
+
+    @Test
+    void matchesAScanOnRandomDossiers() {
+        Random random = new Random(5);
+        String[] schemes = {"S1", "S2", "S3", "S4", "S5"};
+        for (int round = 0; round < 20; round++) {
+            Dossier dossier = new Dossier();
+            List<String[]> policies = new ArrayList<>();
+            int size = 1 + random.nextInt(300);
+            for (int i = 0; i < size; i++) {
+                String[] policy = {schemes[random.nextInt(schemes.length)], randomDate(random)};
+                policies.add(policy);
+                add(dossier, policy[0] + ":" + policy[1]);
+            }
+            for (int q = 0; q < 50; q++) {
+                String scheme = random.nextBoolean() ? schemes[random.nextInt(schemes.length)] : null;
+                String before = scheme == null || random.nextBoolean() ? randomDate(random) : null;
+                int[] expected = scan(policies, scheme, before);
+                assertArrayEquals(expected, positions(dossier, scheme, before), scheme + " before " + before);
+                assertEquals(expected.length, count(dossier, scheme, before));
+            }
+            for (String[] policy : policies) {
+                assertTrue(dossier.hasPolicy(policy[0], policy[1]));
+            }
+        }
+    }
+
+    private static String randomDate(Random random) {
+        return IsoDates.toIsoString(IsoDates.epochDay(1990, 1, 1) + random.nextInt(12_000));
+    }
+
+    private static int[] scan(List<String[]> policies, String scheme, String before) {
+        int[] out = new int[policies.size()];
+        int n = 0;
+        for (int i = 0; i < policies.size(); i++) {
+            String[] policy = policies.get(i);
+            if ((scheme == null || scheme.equals(policy[0])) && (before == null || policy[1].compareTo(before) < 0)) {
+                out[n++] = i;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** Policies given as {@code "scheme:start date"}. */
+    private static Dossier dossier(String... policies) {
+        Dossier dossier = new Dossier();
+        dossier.setDossierId("d");
+        for (String policy : policies) {
+            add(dossier, policy);
+        }
+        return dossier;
+    }
+
+    private static void add(Dossier dossier, String policy) {
+        String[] parts = policy.split(":");
+        dossier.addPolicy("p" + dossier.getPolicyCount(), parts[0], parts[1], IsoDates.parseEpochDay(parts[1]),
+                50_000, 1.0);
+    }
+
+    private static int[] positions(Dossier dossier, String scheme, String before) {
+        return dossier.policyPositions(scheme, before, IsoDates.parseEpochDay(before));
+    }
+
+    private static int count(Dossier dossier, String scheme, String before) {
+        return dossier.countPolicies(scheme, before, IsoDates.parseEpochDay(before));
+    }
+}
@@ -0,0 +1,100 @@
+package com.pension.engine.scheme;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN = TimeUnit.MILLISECONDS.toNanos(5000);
+
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 5000);
+
+    @Test
+    void opensAfterTheThresholdOfFailuresInARow() {
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertTrue(breaker.allowRequest(0));
+
+        breaker.onFailure(0);
+
+        assertFalse(breaker.allowRequest(0));
+        assertFalse(breaker.allowRequest(OPEN - 1));
+    }
+
+    @Test
+    void successResetsTheCount() {
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        breaker.onSuccess();
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+
+        assertTrue(breaker.allowRequest(0));
+    }
+
+    @Test
+    void halfOpenLetsOneProbeThroughThatClosesOnSuccess() {
+        open(0);
+
+        assertTrue(breaker.allowRequest(OPEN));
+        assertFalse(breaker.allowRequest(OPEN), "second call while the probe is out");
+
+        breaker.onSuccess();
+
+        assertTrue(breaker.allowRequest(OPEN));
+        assertTrue(breaker.allowRequest(OPEN));
+    }
+
+    @Test
+    void failedProbeReopensForAnotherPeriod() {
+        open(0);
+        assertTrue(breaker.allowRequest(OPEN));
+
+        breaker.onFailure(OPEN);
+
+        assertFalse(breaker.allowRequest(OPEN));
+        assertFalse(breaker.allowRequest(2 * OPEN - 1));
+        assertTrue(breaker.allowRequest(2 * OPEN));
+    }
+
+    @Test
+    void abandonedProbeLetsTheNextCallProbe() {
+        open(0);
+        assertTrue(breaker.allowRequest(OPEN));
+
+        breaker.onAbandoned();
+
+        assertTrue(breaker.allowRequest(OPEN));
+        assertFalse(breaker.allowRequest(OPEN));
+    }
+
+    @Test
+    void abandonedCallsDoNotCount() {
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        breaker.onAbandoned();
+        breaker.onAbandoned();
+
+        assertTrue(breaker.allowRequest(0));
+    }
+
+    @Test
+    void zeroThresholdNeverOpens() {
+        CircuitBreaker never = new CircuitBreaker(0, 5000);
+        for (int i = 0; i < 100; i++) {
+            never.onFailure(0);
+        }
+        assertTrue(never.allowRequest(0));
+    }
+
+    private void open(long now) {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(now);
+        }
+        assertFalse(breaker.allowRequest(now));
+    }
+}
@@ -0,0 +1,100 @@
+package com.pension.engine.scheme;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemeCacheSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsRates() throws IOException {
+        Map<String, Double> rates = new HashMap<>();
+        rates.put("SCHEME-A", 0.02);
+        rates.put("régime-é", 0.0175);
+        rates.put("x".repeat(300), Double.MIN_VALUE);
+        for (int i = 0; i < 1000; i++) {
+            rates.put("S" + i, i / 1000.0);
+        }
+        Path file = dir.resolve("schemes.snapshot");
+
+        SchemeCacheSnapshot.write(file, rates);
+
+        assertEquals(rates, SchemeCacheSnapshot.read(file));
+        assertFalse(Files.exists(dir.resolve("schemes.snapshot.tmp")));
+    }
+
+    @Test
+    void roundTripsAnEmptyCacheAndReadsAMissingFileAsEmpty() throws IOException {
+        Path file = dir.resolve("schemes.snapshot");
+        assertEquals(Map.of(), SchemeCacheSnapshot.read(file));
+
+        SchemeCacheSnapshot.write(file, Map.of());
+
+        assertEquals(Map.of(), SchemeCacheSnapshot.read(file));
+    }
+
+    @Test
+    void overwritesAnEarlierSnapshot() throws IOException {
+        Path file = dir.resolve("schemes.snapshot");
+        SchemeCacheSnapshot.write(file, Map.of("A", 0.01, "B", 0.02));
+
+        SchemeCacheSnapshot.write(file, Map.of("C", 0.03));
+
+        assertEquals(Map.of("C", 0.03), SchemeCacheSnapshot.read(file));
+    }
+
+    @Test
+    void rejectsAForeignFile() throws IOException {
+        Path file = snapshot(Map.of("A", 0.02));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[0] ^= 0x01;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> SchemeCacheSnapshot.read(file));
+        assertTrue(e.getMessage().contains("not a scheme cache snapshot"), e.getMessage());
+    }
+
+    @Test
+    void rejectsADamagedEntry() throws IOException {
+        Path file = snapshot(Map.of("A", 0.02));
+        byte[] bytes = Files.readAllBytes(file);
+        // Last byte of the rate, just before the 8-byte checksum
+        bytes[bytes.length - 9] ^= 0x01;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> SchemeCacheSnapshot.read(file));
+        assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+    }
+
+    @Test
+    void rejectsATruncatedFile() throws IOException {
+        Path file = snapshot(Map.of("A", 0.02, "B", 0.03));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertThrows(IOException.class, () -> SchemeCacheSnapshot.read(file));
+
+        Files.write(file, Arrays.copyOf(bytes, 10));
+        assertThrows(IOException.class, () -> SchemeCacheSnapshot.read(file));
+    }
+
+    private Path snapshot(Map<String, Double> rates) throws IOException {
+        Path file = dir.resolve("schemes.snapshot");
+        SchemeCacheSnapshot.write(file, rates);
+        return file;
+    }
+}
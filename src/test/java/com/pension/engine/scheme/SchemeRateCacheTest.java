@@ -0,0 +1,105 @@
+package com.pension.engine.scheme;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemeRateCacheTest {
+
+    private static final long TTL = TimeUnit.MILLISECONDS.toNanos(1000);
+    private static final long NEGATIVE_TTL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final SchemeRateCache cache = new SchemeRateCache(1000, 100, 8);
+
+    @Test
+    void answerIsFreshForTheTtlThenStale() {
+        cache.putAnswer("A", 0.03, 0);
+
+        assertEquals(SchemeRateCache.State.FRESH, state("A", TTL - 1));
+        assertEquals(SchemeRateCache.State.STALE, state("A", TTL));
+        assertEquals(SchemeRateCache.State.STALE, state("A", 100 * TTL));
+        assertEquals(0.03, cache.get("A", 100 * TTL).rate);
+        assertNull(cache.get("B", 0));
+    }
+
+    @Test
+    void failureWithoutAnAnswerIsANegativeEntryUntilTheNegativeTtl() {
+        assertEquals(0.02, cache.putFailure("A", 0.02, 0));
+
+        SchemeRateCache.Entry entry = cache.get("A", 0);
+        assertTrue(entry.negative);
+        assertEquals(0.02, entry.rate);
+        assertEquals(SchemeRateCache.State.FRESH, state("A", NEGATIVE_TTL - 1));
+        assertEquals(SchemeRateCache.State.MISS, state("A", NEGATIVE_TTL));
+
+        // A later answer replaces it
+        cache.putAnswer("A", 0.04, NEGATIVE_TTL);
+        assertFalse(cache.get("A", NEGATIVE_TTL).negative);
+        assertEquals(0.04, cache.get("A", NEGATIVE_TTL).rate);
+    }
+
+    @Test
+    void failedRefreshKeepsTheStaleAnswerAndRetriesAfterTheNegativeTtl() {
+        cache.putAnswer("A", 0.03, 0);
+
+        assertEquals(0.03, cache.putFailure("A", 0.02, TTL));
+
+        SchemeRateCache.Entry entry = cache.get("A", TTL);
+        assertFalse(entry.negative);
+        assertEquals(0.03, entry.rate);
+        assertEquals(SchemeRateCache.State.FRESH, state("A", TTL + NEGATIVE_TTL - 1));
+        assertEquals(SchemeRateCache.State.STALE, state("A", TTL + NEGATIVE_TTL));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyReadEntries() {
+        for (int i = 0; i < 8; i++) {
+            cache.putAnswer("S" + i, 0.01 * i, i);
+        }
+        // Reading S0 and S1 makes S2 and S3 the least recently read
+        cache.get("S0", 10);
+        cache.get("S1", 11);
+
+        cache.putAnswer("S8", 0.08, 12);
+
+        // One over the bound, plus an eighth of it
+        assertNull(cache.get("S2", 13));
+        assertNull(cache.get("S3", 13));
+        for (String kept : new String[] {"S0", "S1", "S4", "S5", "S6", "S7", "S8"}) {
+            assertNotNull(cache.get(kept, 13), kept);
+        }
+    }
+
+    @Test
+    void snapshotRatesLoadStaleWithoutOverwritingAnswers() {
+        cache.putAnswer("A", 0.03, 0);
+
+        cache.putStale("A", 0.05, 1);
+        cache.putStale("B", 0.05, 1);
+
+        assertEquals(0.03, cache.get("A", 1).rate);
+        assertEquals(SchemeRateCache.State.FRESH, state("A", 1));
+        assertEquals(0.05, cache.get("B", 1).rate);
+        assertEquals(SchemeRateCache.State.STALE, state("B", 1));
+    }
+
+    @Test
+    void answersLeaveOutNegativeEntries() {
+        cache.putAnswer("A", 0.03, 0);
+        cache.putStale("B", 0.05, 0);
+        cache.putFailure("C", 0.02, 0);
+
+        assertEquals(Map.of("A", 0.03, "B", 0.05), cache.answers());
+    }
+
+    private SchemeRateCache.State state(String schemeId, long now) {
+        return cache.get(schemeId, now).state(now);
+    }
+}
@@ -0,0 +1,331 @@
+package com.pension.engine.scheme;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemeRegistryClientTest {
+
+    /** Every request URI the registry under test received, in order, and when. */
+    private final List<String> hits = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> hitNanos = Collections.synchronizedList(new ArrayList<>());
+    private final SchemeRateCache cache = new SchemeRateCache(60_000, 1_000, 64);
+    private final CircuitBreaker breaker = new CircuitBreaker(1, 60_000);
+    private Vertx vertx;
+
+    @BeforeEach
+    void startVertx() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterEach
+    void closeVertx() throws Exception {
+        await(vertx.close());
+    }
+
+    @Test
+    void concurrentLookupsOfAColdSchemeShareOneCall() throws Exception {
+        String url = serve(StubSchemeRegistry.from(new JsonObject("{\"schemes\":{\"A\":0.03},\"latency\":{\"ms\":100}}")));
+        SchemeRegistryClient client = client(url, true, 0, 64, noHedging());
+
+        int callers = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Future<Map<String, Double>>>> lookups = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            lookups.add(() -> {
+                start.await();
+                return client.accrualRates(Set.of("A"));
+            });
+        }
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<java.util.concurrent.Future<Future<Map<String, Double>>>> started = new ArrayList<>();
+            for (Callable<Future<Map<String, Double>>> lookup : lookups) {
+                started.add(threads.submit(lookup));
+            }
+            start.countDown();
+            for (java.util.concurrent.Future<Future<Map<String, Double>>> lookup : started) {
+                assertEquals(Map.of("A", 0.03), await(lookup.get(5, TimeUnit.SECONDS)));
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(List.of("/schemes/A"), hits);
+    }
+
+    @Test
+    void aFetchJoinsTheCallInFlight() throws Exception {
+        String url = serve(StubSchemeRegistry.from(new JsonObject("{\"schemes\":{\"A\":0.03},\"latency\":{\"ms\":100}}")));
+        SchemeRegistryClient client = client(url, true, 0, 64, noHedging());
+
+        Future<Double> first = client.fetchOnce("A", client.deadline(0));
+        Future<Double> joined = client.fetchOnce("A", client.deadline(0));
+
+        assertSame(first, joined);
+        assertEquals(0.03, (double) await(joined));
+        assertEquals(List.of("/schemes/A"), hits);
+    }
+
+    @Test
+    void aFetchArrivingAfterTheCallFinishedUsesItsAnswer() throws Exception {
+        String url = serve(StubSchemeRegistry.from(new JsonObject("{\"schemes\":{\"A\":0.03}}")));
+        SchemeRegistryClient client = client(url, true, 0, 64, noHedging());
+        assertEquals(Map.of("A", 0.03), await(client.accrualRates(Set.of("A"))));
+
+        // Like a lookup that read the cache just before that call's answer landed in it
+        assertEquals(0.03, (double) await(client.fetchOnce("A", client.deadline(0))));
+
+        assertEquals(List.of("/schemes/A"), hits);
+    }
+
+    @Test
+    void missesWithinTheBatchWindowShareOneBulkCall() throws Exception {
+        String url = serve(StubSchemeRegistry.from(new JsonObject(
+                "{\"schemes\":{\"A\":0.03,\"B\":0.025,\"C\":0.0175}}")));
+        SchemeRegistryClient client = client(url, true, 200, 64, noHedging());
+
+        Future<Map<String, Double>> a = client.accrualRates(Set.of("A"));
+        Thread.sleep(50);
+        Future<Map<String, Double>> bc = client.accrualRates(List.of("B", "C"));
+
+        assertEquals(Map.of("A", 0.03), await(a));
+        assertEquals(Map.of("B", 0.025, "C", 0.0175), await(bc));
+        assertEquals(List.of("/schemes?ids=A,B,C"), hits);
+    }
+
+    @Test
+    void aFullBatchGoesOutBeforeTheWindowEnds() throws Exception {
+        String url = serve(StubSchemeRegistry.from(new JsonObject(
+                "{\"schemes\":{\"A\":0.03,\"B\":0.025,\"C\":0.0175}}")));
+        // A window far past the deadline: only the size limit can send the batch in time
+        SchemeRegistryClient client = client(url, true, 10_000, 3, noHedging());
+
+        long start = System.nanoTime();
+        Future<Map<String, Double>> ab = client.accrualRates(List.of("A", "B"));
+        Future<Map<String, Double>> c = client.accrualRates(Set.of("C"));
+
+        assertEquals(Map.of("A", 0.03, "B", 0.025), await(ab));
+        assertEquals(Map.of("C", 0.0175), await(c));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(List.of("/schemes?ids=A,B,C"), hits);
+    }
+
+    @Test
+    void aRegistryWithoutTheBulkEndpointIsAskedPerScheme() throws Exception {
+        StubSchemeRegistry stub = StubSchemeRegistry.from(new JsonObject(
+                "{\"bulk\":false,\"default_accrual_rate\":0.02,\"schemes\":{\"A\":0.03}}"));
+        assertFallsBackToPerSchemeCalls(serve(stub));
+    }
+
+    @Test
+    void aBulkEndpointAnswering405IsNotUsedAgain() throws Exception {
+        assertFallsBackToPerSchemeCalls(serveWithBulkAnswering(405));
+    }
+
+    @Test
+    void aBulkEndpointAnswering501IsNotUsedAgain() throws Exception {
+        assertFallsBackToPerSchemeCalls(serveWithBulkAnswering(501));
+    }
+
+    /** The first batch is retried per scheme after the bulk call fails, and later batches skip it. */
+    private void assertFallsBackToPerSchemeCalls(String url) throws Exception {
+        SchemeRegistryClient client = client(url, true, 20, 64, noHedging());
+
+        assertEquals(Map.of("A", 0.03, "B", 0.02), await(client.accrualRates(List.of("A", "B"))));
+        assertEquals("/schemes?ids=A,B", hits.get(0));
+        assertEquals(Set.of("/schemes/A", "/schemes/B"), Set.copyOf(hits.subList(1, hits.size())));
+        assertEquals(3, hits.size());
+
+        hits.clear();
+        assertEquals(Map.of("C", 0.02, "D", 0.02), await(client.accrualRates(List.of("C", "D"))));
+        assertEquals(Set.of("/schemes/C", "/schemes/D"), Set.copyOf(hits));
+        assertEquals(2, hits.size());
+    }
+
+    @Test
+    void aSlowCallIsHedgedAfterTheLatencyPercentileAndTheHedgeCanWin() throws Exception {
+        String url = serveInTurn(new long[] {1000, 0}, new double[] {0.01, 0.03});
+        SchemeRegistryClient client = client(url, true, 0, 64, hedgingAfter50Ms());
+
+        long start = System.nanoTime();
+        assertEquals(0.03, (double) await(client.fetchOnce("A", client.deadline(0))));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(List.of("/schemes/A", "/schemes/A"), hits);
+        long hedgedAfter = hitNanos.get(1) - start;
+        assertTrue(hedgedAfter >= TimeUnit.MILLISECONDS.toNanos(50), "hedged after " + hedgedAfter + " ns");
+        assertTrue(hedgedAfter < TimeUnit.MILLISECONDS.toNanos(500), "hedged after " + hedgedAfter + " ns");
+        assertTrue(breaker.allowRequest(System.nanoTime()));
+    }
+
+    @Test
+    void theFirstCallCanBeatItsHedge() throws Exception {
+        String url = serveInTurn(new long[] {150, 1000}, new double[] {0.01, 0.03});
+        SchemeRegistryClient client = client(url, true, 0, 64, hedgingAfter50Ms());
+
+        assertEquals(0.01, (double) await(client.fetchOnce("A", client.deadline(0))));
+
+        assertEquals(List.of("/schemes/A", "/schemes/A"), hits);
+        assertEquals(0.01, cache.get("A", System.nanoTime()).rate);
+    }
+
+    @Test
+    void aCallIsNotHedgedPastItsDeadline() throws Exception {
+        String url = serveInTurn(new long[] {1000, 0}, new double[] {0.01, 0.03});
+        SchemeRegistryClient client = client(url, true, 0, 64, hedgingAfter50Ms());
+
+        assertEquals(0.02, (double) await(client.fetchOnce("A", client.deadline(30))));
+        Thread.sleep(150);
+
+        assertEquals(List.of("/schemes/A"), hits);
+    }
+
+    @Test
+    void aHedgedCallThatFailsTwiceCountsOnceAgainstTheBreaker() throws Exception {
+        String url = serve(StubSchemeRegistry.from(new JsonObject(
+                "{\"schemes\":{\"A\":0.03},\"latency\":{\"ms\":100},\"error_rate\":1.0}")));
+        CircuitBreaker twoStrikes = new CircuitBreaker(2, 60_000);
+        SchemeRegistryClient client = new SchemeRegistryClient(vertx, url, cache, twoStrikes, hedgingAfter50Ms(),
+                true, 0, 64, 2000);
+
+        assertEquals(0.02, (double) await(client.fetchOnce("A", client.deadline(0))));
+
+        assertEquals(List.of("/schemes/A", "/schemes/A"), hits);
+        assertTrue(twoStrikes.allowRequest(System.nanoTime()));
+        twoStrikes.onFailure(System.nanoTime());
+        assertFalse(twoStrikes.allowRequest(System.nanoTime()));
+    }
+
+    @Test
+    void anUnansweredCallCutOffByTheDeadlineIsNoFailure() throws Exception {
+        String url = serve(StubSchemeRegistry.from(new JsonObject(
+                "{\"schemes\":{\"A\":0.03},\"timeout_rate\":1.0}")));
+        SchemeRegistryClient client = client(url, true, 0, 64, noHedging());
+
+        assertEquals(Map.of("A", 0.02), await(client.accrualRates(Set.of("A"), client.deadline(100))));
+        assertEquals(0.02, (double) await(client.fetchOnce("A", client.deadline(100))));
+
+        assertTrue(breaker.allowRequest(System.nanoTime()));
+        assertNull(cache.get("A", System.nanoTime()));
+    }
+
+    @Test
+    void aTricklingAnswerIsCutOffAtTheDeadline() throws Exception {
+        // About 40 bytes, one every 20 ms: each gap is well inside the client's timeout
+        String url = serve(StubSchemeRegistry.from(new JsonObject(
+                "{\"schemes\":{\"A\":0.03},\"slow_drip\":{\"rate\":1.0,\"byte_delay_ms\":20}}")));
+        SchemeRegistryClient client = client(url, true, 0, 64, noHedging());
+
+        long start = System.nanoTime();
+        assertEquals(0.02, (double) await(client.fetchOnce("A", client.deadline(200))));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(breaker.allowRequest(System.nanoTime()));
+        assertNull(cache.get("A", System.nanoTime()));
+    }
+
+    @Test
+    void aLookupJoiningWithMoreTimeGetsTheAnswerAfterTheCallIsCutOff() throws Exception {
+        String url = serve(StubSchemeRegistry.from(new JsonObject(
+                "{\"schemes\":{\"A\":0.03},\"latency\":{\"ms\":300}}")));
+        SchemeRegistryClient client = client(url, true, 0, 64, noHedging());
+
+        Future<Map<String, Double>> hurried = client.accrualRates(Set.of("A"), client.deadline(100));
+        Future<Map<String, Double>> patient = client.accrualRates(Set.of("A"), client.deadline(2000));
+
+        assertEquals(Map.of("A", 0.02), await(hurried));
+        assertEquals(Map.of("A", 0.03), await(patient));
+        // The call cut off for the first lookup, then made again for the second
+        assertEquals(List.of("/schemes/A", "/schemes/A"), hits);
+        assertTrue(breaker.allowRequest(System.nanoTime()));
+    }
+
+    private SchemeRegistryClient client(String url, boolean bulk, long batchWindowMs, int batchMaxIds,
+                                        LatencyWindow latencies) {
+        return new SchemeRegistryClient(vertx, url, cache, breaker, latencies, bulk, batchWindowMs, batchMaxIds,
+                2000);
+    }
+
+    private static LatencyWindow noHedging() {
+        return new LatencyWindow(20, 0);
+    }
+
+    /** A p50 of 50 ms over enough samples to hedge with. */
+    private static LatencyWindow hedgingAfter50Ms() {
+        LatencyWindow latencies = new LatencyWindow(20, 50);
+        for (int i = 0; i < 32; i++) {
+            latencies.record(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        return latencies;
+    }
+
+    /** The stub's per-scheme endpoint, with {@code status} from the bulk one. */
+    private String serveWithBulkAnswering(int status) throws Exception {
+        Handler<HttpServerRequest> stub = StubSchemeRegistry.from(new JsonObject(
+                "{\"default_accrual_rate\":0.02,\"schemes\":{\"A\":0.03}}")).handler(vertx);
+        return serve(req -> {
+            if ("/schemes".equals(req.path())) {
+                req.response().setStatusCode(status).end();
+            } else {
+                stub.handle(req);
+            }
+        });
+    }
+
+    /** Answers the n-th request, for scheme A, with {@code rates[n]} after {@code delaysMs[n]}. */
+    private String serveInTurn(long[] delaysMs, double[] rates) throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        return serve(req -> {
+            int n = requests.getAndIncrement();
+            String body = new JsonObject().put("scheme_id", "A").put("accrual_rate", rates[n]).encode();
+            vertx.setTimer(Math.max(1, delaysMs[n]), id -> req.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(body));
+        });
+    }
+
+    private String serve(StubSchemeRegistry registry) throws Exception {
+        return serve(registry.handler(vertx));
+    }
+
+    /** Serves {@code handler} on an ephemeral port, recording each request in {@link #hits}; the base URL. */
+    private String serve(Handler<HttpServerRequest> handler) throws Exception {
+        HttpServer server = await(vertx.createHttpServer()
+                .requestHandler(req -> {
+                    hitNanos.add(System.nanoTime());
+                    hits.add(req.uri());
+                    handler.handle(req);
+                })
+                .listen(0));
+        return "http://localhost:" + server.actualPort();
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+}
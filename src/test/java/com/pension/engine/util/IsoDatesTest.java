@@ -0,0 +1,88 @@
+package com.pension.engine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IsoDatesTest {
+
+    /** 1600 and 2000 are leap years, 1700, 1800, 1900 and 2100 are not. */
+    private static final int FIRST_DAY = (int) LocalDate.of(1600, 1, 1).toEpochDay();
+    private static final int LAST_DAY = (int) LocalDate.of(2400, 12, 31).toEpochDay();
+
+    @Test
+    void parsesAndFormatsEveryDayLikeLocalDate() {
+        for (int day = FIRST_DAY; day <= LAST_DAY; day++) {
+            String text = LocalDate.ofEpochDay(day).toString();
+            assertEquals(day, IsoDates.parseEpochDay(text), text);
+            assertEquals(text, IsoDates.toIsoString(day));
+        }
+    }
+
+    @Test
+    void rejectsExactlyWhatLocalDateRejects() {
+        int[] years = {1600, 1700, 1900, 2000, 2023, 2024, 2100};
+        for (int year : years) {
+            for (int month = 0; month <= 13; month++) {
+                for (int day = 0; day <= 32; day++) {
+                    String text = String.format("%04d-%02d-%02d", year, month, day);
+                    assertEquals(localDateEpochDay(text), IsoDates.parseEpochDay(text), text);
+                }
+            }
+        }
+    }
+
+    @Test
+    void handsOtherFormsToLocalDate() {
+        String[] texts = {"", "2024", "2024-1-01", "2024-01-1", "2024/01/01", "20240101", "2024-0a-01",
+                " 2024-01-01", "+12345-01-01", "-0001-12-31", "+2024-01-01", "2024-02-29T00:00"};
+        for (String text : texts) {
+            assertEquals(localDateEpochDay(text), IsoDates.parseEpochDay(text), text);
+        }
+        assertEquals(IsoDates.INVALID, IsoDates.parseEpochDay(null));
+    }
+
+    @Test
+    void formatsYearsOutsideFourDigitsLikeLocalDate() {
+        LocalDate[] dates = {LocalDate.of(-1, 12, 31), LocalDate.of(0, 1, 1), LocalDate.of(9999, 12, 31),
+                LocalDate.of(10000, 1, 1)};
+        for (LocalDate date : dates) {
+            assertEquals(date.toString(), IsoDates.toIsoString((int) date.toEpochDay()));
+        }
+    }
+
+    @Test
+    void addsMonthsLikeLocalDate() {
+        int[] months = {-1200, -25, -13, -12, -1, 0, 1, 2, 11, 12, 13, 25, 1200};
+        int from = (int) LocalDate.of(1899, 1, 1).toEpochDay();
+        int to = (int) LocalDate.of(2101, 12, 31).toEpochDay();
+        for (int day = from; day <= to; day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            for (int m : months) {
+                assertEquals(date.plusMonths(m).toEpochDay(), IsoDates.plusMonths(day, m), date + " + " + m);
+            }
+        }
+    }
+
+    @Test
+    void monthLengthsMatchYearMonth() {
+        for (int year = 1582; year <= 2500; year++) {
+            for (int month = 1; month <= 12; month++) {
+                assertEquals(YearMonth.of(year, month).lengthOfMonth(), IsoDates.lengthOfMonth(year, month),
+                        year + "-" + month);
+            }
+        }
+    }
+
+    private static int localDateEpochDay(String text) {
+        try {
+            return (int) LocalDate.parse(text).toEpochDay();
+        } catch (DateTimeException e) {
+            return IsoDates.INVALID;
+        }
+    }
+}
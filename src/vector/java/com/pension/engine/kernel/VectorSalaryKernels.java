@@ -0,0 +1,104 @@
+package com.pension.engine.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link SalaryKernels} on the Vector API at the platform's preferred width, with scalar tails.
+ * Every lane computes exactly what {@link ScalarSalaryKernels} does for that element (epoch days
+ * and their differences are exact in a double); only {@link #weightedSum} reorders its additions.
+ * Only loaded when selected, since it needs {@code --add-modules jdk.incubator.vector}.
+ */
+public final class VectorSalaryKernels implements SalaryKernels {
+
+    public static final VectorSalaryKernels INSTANCE = new VectorSalaryKernels();
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    /** Same lane count as {@link #DOUBLES}, for loading int columns that widen to doubles. */
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    private static final double DAYS_PER_YEAR = 365.25;
+
+    private VectorSalaryKernels() {}
+
+    @Override
+    public void yearsOfService(int[] startDays, long toDay, double[] years, int from, int to) {
+        DoubleVector target = DoubleVector.broadcast(DOUBLES, (double) toDay);
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()) {
+            DoubleVector start = (DoubleVector) IntVector.fromArray(INTS, startDays, i)
+                    .convertShape(VectorOperators.I2D, DOUBLES, 0);
+            DoubleVector diff = target.sub(start);
+            VectorMask<Double> before = diff.compare(VectorOperators.LT, 0);
+            diff.div(DAYS_PER_YEAR).blend(0, before).intoArray(years, i);
+        }
+        for (; i < to; i++) {
+            long daysDiff = toDay - startDays[i];
+            years[i] = daysDiff < 0 ? 0 : daysDiff / DAYS_PER_YEAR;
+        }
+    }
+
+    @Override
+    public double weightedSum(double[] salaries, double[] partTimeFactors, double[] years, int count) {
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(count); i < bound; i += DOUBLES.length()) {
+            DoubleVector s = DoubleVector.fromArray(DOUBLES, salaries, i);
+            DoubleVector p = DoubleVector.fromArray(DOUBLES, partTimeFactors, i);
+            DoubleVector y = DoubleVector.fromArray(DOUBLES, years, i);
+            acc = acc.add(s.mul(p).mul(y));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < count; i++) {
+            sum += salaries[i] * partTimeFactors[i] * years[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void accruedPensions(double weightedAvg, double[] years, double[] rates, int[] rateIndex,
+                                double[] out, int from, int to) {
+        DoubleVector avg = DoubleVector.broadcast(DOUBLES, weightedAvg);
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()) {
+            DoubleVector rate = DoubleVector.fromArray(DOUBLES, rates, 0, rateIndex, i);
+            avg.mul(DoubleVector.fromArray(DOUBLES, years, i)).mul(rate).intoArray(out, i);
+        }
+        for (; i < to; i++) {
+            out[i] = weightedAvg * years[i] * rates[rateIndex[i]];
+        }
+    }
+
+    @Override
+    public void proportionalPensions(double annualPension, double[] years, double totalYears,
+                                     double[] out, int from, int to) {
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, years, i).div(totalYears).mul(annualPension).intoArray(out, i);
+        }
+        for (; i < to; i++) {
+            out[i] = annualPension * (years[i] / totalYears);
+        }
+    }
+
+    @Override
+    public void projectionRow(double[] dateDays, double[] weightedAvgs, double startDay, double accrualRate,
+                              double[] out, int count) {
+        int n = 0;
+        for (int bound = DOUBLES.loopBound(count); n < bound; n += DOUBLES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(DOUBLES, dateDays, n).sub(startDay);
+            VectorMask<Double> before = diff.compare(VectorOperators.LT, 0);
+            DoubleVector years = diff.div(DAYS_PER_YEAR).blend(0, before);
+            DoubleVector.fromArray(DOUBLES, weightedAvgs, n).mul(years).mul(accrualRate).intoArray(out, n);
+        }
+        for (; n < count; n++) {
+            double daysDiff = dateDays[n] - startDay;
+            double years = daysDiff >= 0 ? daysDiff / DAYS_PER_YEAR : 0;
+            out[n] = weightedAvgs[n] * years * accrualRate;
+        }
+    }
+}